@@ -0,0 +1,61 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.core.AppFilterParser;
+import com.afollestad.iconrequest.core.ComponentFilter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing an appfilter into its component set and compacting it, what AppFilterAssets does on every
+ * load, against reading the filter the appfilter Gradle plugin compiled at build time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppFilterParserBenchmark {
+
+  @Param({"1000", "5000", "20000"})
+  public int entries;
+
+  private byte[] appFilter;
+  private byte[] compiled;
+
+  @Setup
+  public void setup() throws Exception {
+    appFilter = Fixtures.appFilter(entries);
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    ComponentFilter.of(Fixtures.filter(entries)).writeTo(os);
+    compiled = os.toByteArray();
+  }
+
+  @Benchmark
+  public HashSet<String> readComponents() throws Exception {
+    return AppFilterParser.readComponents(new ByteArrayInputStream(appFilter));
+  }
+
+  @Benchmark
+  public ComponentFilter parseAndIndex() throws Exception {
+    return ComponentFilter.of(AppFilterParser.readComponents(new ByteArrayInputStream(appFilter)));
+  }
+
+  @Benchmark
+  public ComponentFilter readCompiled() throws Exception {
+    return ComponentFilter.readFrom(new ByteArrayInputStream(compiled));
+  }
+}
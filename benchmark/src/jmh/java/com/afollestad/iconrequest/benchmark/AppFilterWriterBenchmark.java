@@ -0,0 +1,61 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.benchmark.Fixtures.App;
+import com.afollestad.iconrequest.benchmark.Fixtures.NullWriter;
+import com.afollestad.iconrequest.core.AppFilterWriter;
+import com.afollestad.iconrequest.core.Drawables;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Generating the request appfilter.xml/JSON and drawable names for a selection. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppFilterWriterBenchmark {
+
+  @Param({"100", "1000", "5000"})
+  public int apps;
+
+  private List<App> selected;
+
+  @Setup
+  public void setup() {
+    selected = Fixtures.apps(apps);
+  }
+
+  @Benchmark
+  public long writeXml() throws Exception {
+    final NullWriter out = new NullWriter();
+    AppFilterWriter.writeXml(out, selected);
+    return out.count;
+  }
+
+  @Benchmark
+  public long writeJson() throws Exception {
+    final NullWriter out = new NullWriter();
+    AppFilterWriter.writeJson(out, selected);
+    return out.count;
+  }
+
+  @Benchmark
+  public void drawableNames(Blackhole blackhole) {
+    for (App app : selected) {
+      blackhole.consume(Drawables.name(app.name()));
+    }
+  }
+}
@@ -0,0 +1,123 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.benchmark.Fixtures.App;
+import com.afollestad.iconrequest.core.AppInventory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Heap footprint of the loaded apps a PolarRequest holds while it's alive, an unmodifiable list of
+ * AppModels with three Strings and two flags each, against the compact {@link AppInventory} it
+ * saves them as. The retained bytes of both are reported as extra counters, the benchmarks show
+ * what building the inventory and reading components back out of it cost.
+ *
+ * <p>Heap usage reported by the JVM is too coarse for a few hundred kilobytes, so the footprints
+ * are computed from the object layout of a 64-bit VM with compressed references and compact
+ * strings: 12 byte headers, 4 byte references and 8 byte alignment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppInventoryBenchmark {
+
+  @Param({"600", "2000", "5000"})
+  public int apps;
+
+  private List<App> installed;
+  private AppInventory inventory;
+  private long liveBytes;
+  private long inventoryBytes;
+
+  @Setup
+  public void setup() {
+    installed = Fixtures.apps(apps);
+    inventory = AppInventory.of(installed);
+
+    // AppState's snapshot: an unmodifiable view of an ArrayList of AutoValue AppModels, each with
+    // a label, component and package name of its own, as they come from the package manager
+    liveBytes = align(12 + 4 + 4) + align(12 + 4 + 4) + array(4, apps);
+    for (App app : installed) {
+      liveBytes += align(12 + 3 * 4 + 2) + string(app.name()) + string(app.code());
+      liveBytes += string(app.pkg());
+    }
+
+    // Pooled packages, then flat arrays for package ids, offsets and characters
+    final HashSet<String> packages = new HashSet<>();
+    long chars = 0;
+    for (int i = 0; i < inventory.size(); i++) {
+      final String pkg = inventory.pkg(i);
+      String className = inventory.code(i).substring(pkg.length() + 1);
+      if (className.startsWith(pkg + ".")) {
+        className = className.substring(pkg.length());
+      }
+      packages.add(pkg);
+      chars += inventory.name(i).length() + className.length();
+    }
+    inventoryBytes = align(12 + 4 * 4) + array(4, packages.size());
+    for (String pkg : packages) {
+      inventoryBytes += string(pkg);
+    }
+    inventoryBytes += array(4, apps) + array(4, apps * 2 + 1) + array(2, chars);
+  }
+
+  private static long string(String value) {
+    return align(12 + 4 + 4 + 2) + array(1, value.length());
+  }
+
+  private static long array(int elementBytes, long length) {
+    return align(16 + elementBytes * length);
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Footprint {
+
+    public long liveBytes;
+    public long inventoryBytes;
+  }
+
+  @Benchmark
+  public AppInventory build(Footprint footprint) {
+    footprint.liveBytes = liveBytes;
+    footprint.inventoryBytes = inventoryBytes;
+    return AppInventory.of(installed);
+  }
+
+  @Benchmark
+  public int readCodesFromLiveList() {
+    int length = 0;
+    for (App app : installed) {
+      length += app.code().length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public int readCodesFromInventory() {
+    int length = 0;
+    for (int i = 0; i < inventory.size(); i++) {
+      length += inventory.code(i).length();
+    }
+    return length;
+  }
+}
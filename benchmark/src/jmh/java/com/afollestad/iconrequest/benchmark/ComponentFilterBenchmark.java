@@ -0,0 +1,130 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.benchmark.Fixtures.App;
+import com.afollestad.iconrequest.core.ComponentFilter;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filter membership as ComponentInfoPm checks it, for 1000 installed apps of which every other one
+ * is themed: a HashSet of Strings against {@link ComponentFilter}, with and without its Bloom
+ * pre-check. Both see keys with cached hash codes after the first invocation, as the filter is
+ * built around. The heap footprint of each is reported as extra counters, computed from the object
+ * layout of a 64-bit VM with compressed references and compact strings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentFilterBenchmark {
+
+  @Param({"1000", "5000", "20000"})
+  public int entries;
+
+  private String[] probes;
+  private HashSet<String> hashSet;
+  private ComponentFilter filter;
+  private ComponentFilter filterWithoutBloom;
+  private long hashSetBytes;
+  private long filterBytes;
+
+  @Setup
+  public void setup() {
+    final List<App> installed = Fixtures.apps(1000);
+    probes = new String[installed.size()];
+    for (int i = 0; i < probes.length; i++) {
+      probes[i] = installed.get(i).code();
+    }
+    hashSet = Fixtures.filter(entries);
+    filter = ComponentFilter.of(hashSet);
+    filterWithoutBloom = ComponentFilter.of(hashSet, false);
+
+    // Table, one node per entry and the String itself
+    long table = 1;
+    while (table * 3 / 4 < entries) {
+      table *= 2;
+    }
+    hashSetBytes = align(12 + 4) + align(12 + 5 * 4) + array(4, table);
+    long utf8 = 0;
+    for (String component : hashSet) {
+      hashSetBytes += align(12 + 4 * 4) + align(12 + 4 + 4 + 2) + array(1, component.length());
+      utf8 += component.getBytes(Charset.forName("UTF-8")).length;
+    }
+    // Bytes, offsets, hash codes and the Bloom bits, rounded up to a power of two words
+    final long bloomWords = Long.highestOneBit((entries * 10L + 63) / 64 * 2 - 1);
+    filterBytes = align(12 + 4 * 4 + 1) + array(1, utf8) + array(4, entries + 1);
+    filterBytes += array(4, entries) + array(8, bloomWords);
+  }
+
+  private static long array(int elementBytes, long length) {
+    return align(16 + elementBytes * length);
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Footprint {
+
+    public long hashSetBytes;
+    public long filterBytes;
+  }
+
+  @Benchmark
+  public int hashSet(Footprint footprint) {
+    footprint.hashSetBytes = hashSetBytes;
+    footprint.filterBytes = filterBytes;
+    int themed = 0;
+    for (String probe : probes) {
+      if (hashSet.contains(probe)) {
+        themed++;
+      }
+    }
+    return themed;
+  }
+
+  @Benchmark
+  public int componentFilter() {
+    int themed = 0;
+    for (String probe : probes) {
+      if (filter.contains(probe)) {
+        themed++;
+      }
+    }
+    return themed;
+  }
+
+  @Benchmark
+  public int componentFilterWithoutBloom() {
+    int themed = 0;
+    for (String probe : probes) {
+      if (filterWithoutBloom.contains(probe)) {
+        themed++;
+      }
+    }
+    return themed;
+  }
+
+  @Benchmark
+  public ComponentFilter build() {
+    return ComponentFilter.of(hashSet);
+  }
+}
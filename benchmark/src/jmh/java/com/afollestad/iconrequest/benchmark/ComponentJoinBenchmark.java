@@ -0,0 +1,91 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.benchmark.Fixtures.App;
+import com.afollestad.iconrequest.core.ComponentJoin;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The filter/inventory join done by ComponentInfoPm and the state transfer PolarRequest does
+ * between two loads, both through {@link ComponentJoin} as the library calls it. The transfer
+ * doesn't depend on the filter, so it has its own state without the entries parameter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComponentJoinBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Join {
+
+    @Param({"100", "1000", "5000"})
+    public int apps;
+
+    @Param({"1000", "5000", "20000"})
+    public int entries;
+
+    List<App> installed;
+    HashSet<String> filter;
+
+    @Setup
+    public void setup() {
+      installed = Fixtures.apps(apps);
+      filter = Fixtures.filter(entries);
+    }
+  }
+
+  /** A previous load with every third app selected, and the same apps freshly loaded. */
+  @State(Scope.Benchmark)
+  public static class Reload {
+
+    @Param({"100", "1000", "5000"})
+    public int apps;
+
+    List<App> previous;
+    List<App> loaded;
+
+    @Setup
+    public void setup() {
+      previous = Fixtures.apps(apps);
+      loaded = new ArrayList<>(previous.size());
+      for (App app : previous) {
+        loaded.add(new App(app.name(), app.code(), app.pkg(), false));
+      }
+    }
+  }
+
+  @Benchmark
+  public List<App> unthemed(Join join) {
+    return ComponentJoin.unthemed(join.installed, App::code, join.filter);
+  }
+
+  /** Includes copying the loaded list, as PolarRequest does before transferring into it. */
+  @Benchmark
+  public List<App> transferStates(Reload reload) {
+    final List<App> apps = new ArrayList<>(reload.loaded);
+    ComponentJoin.transfer(
+        reload.previous,
+        apps,
+        App::code,
+        (previous, loaded) ->
+            previous.selected
+                ? new App(loaded.name(), loaded.code(), loaded.pkg(), true)
+                : loaded);
+    return apps;
+  }
+}
@@ -0,0 +1,171 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.core.RequestedApp;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/** Deterministic synthetic inputs sized like real icon packs and devices. */
+final class Fixtures {
+
+  private Fixtures() {}
+
+  static String pkg(int i) {
+    return "com.vendor" + (i % 97) + ".app" + i;
+  }
+
+  static String code(int i) {
+    return pkg(i) + "/" + pkg(i) + ".ui.MainActivity";
+  }
+
+  /** An appfilter.xml laid out the way most packs write it, one commented item per app. */
+  static byte[] appFilter(int entries) {
+    final StringBuilder sb = new StringBuilder(entries * 160);
+    sb.append("<resources>\n")
+        .append("    <iconback img1=\"iconback\" />\n")
+        .append("    <iconmask img1=\"iconmask\" />\n")
+        .append("    <iconupon img1=\"iconupon\" />\n")
+        .append("    <scale factor=\"1.0\" />\n");
+    for (int i = 0; i < entries; i++) {
+      sb.append("\n    <!-- App ")
+          .append(i)
+          .append(" -->\n    <item\n        component=\"ComponentInfo{")
+          .append(code(i))
+          .append("}\"\n        drawable=\"app_")
+          .append(i)
+          .append("\" />\n");
+    }
+    sb.append("\n</resources>\n");
+    return sb.toString().getBytes(Charset.forName("UTF-8"));
+  }
+
+  /** The components of {@link #appFilter(int)}. */
+  static HashSet<String> filter(int entries) {
+    final HashSet<String> filter = new HashSet<>(entries * 4 / 3 + 1);
+    for (int i = 0; i < entries; i++) {
+      filter.add(code(i));
+    }
+    return filter;
+  }
+
+  /** Installed apps, every other one of which is also in a filter of the same size. */
+  static List<App> apps(int count) {
+    final List<App> apps = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final int id = i % 2 == 0 ? i : i + 1_000_000;
+      apps.add(new App("Example App " + id, code(id), pkg(id), i % 3 == 0));
+    }
+    return apps;
+  }
+
+  /** Random bytes, which compress about as badly as PNG data does. */
+  static byte[] icon(Random random, int size) {
+    final byte[] icon = new byte[size];
+    random.nextBytes(icon);
+    return icon;
+  }
+
+  /**
+   * ARGB pixels shaped like a launcher icon: a gradient circle with an anti-aliased edge, a flat
+   * colored glyph and a little grain, on a transparent background.
+   */
+  static int[] iconPixels(Random random, int size) {
+    final int[] pixels = new int[size * size];
+    final float center = size / 2f;
+    final float radius = size * 0.45f;
+    final int hue = random.nextInt(0xffffff);
+    final int glyph = 0xff000000 | random.nextInt(0xffffff);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        final float distance = (float) Math.hypot(x - center, y - center);
+        final int alpha = Math.round(Math.max(0, Math.min(1, radius - distance)) * 255);
+        if (alpha == 0) continue;
+        if (Math.abs(x - center) < size * 0.12f && Math.abs(y - center) < size * 0.25f) {
+          pixels[y * size + x] = glyph;
+          continue;
+        }
+        final int shade = y * 96 / size + random.nextInt(4);
+        final int r = Math.min(255, ((hue >> 16) & 0xff) / 2 + shade);
+        final int g = Math.min(255, ((hue >> 8) & 0xff) / 2 + shade);
+        final int b = Math.min(255, (hue & 0xff) / 2 + shade);
+        pixels[y * size + x] = alpha << 24 | r << 16 | g << 8 | b;
+      }
+    }
+    return pixels;
+  }
+
+  static final class App implements RequestedApp {
+
+    private final String name;
+    private final String code;
+    private final String pkg;
+    final boolean selected;
+
+    App(String name, String code, String pkg, boolean selected) {
+      this.name = name;
+      this.code = code;
+      this.pkg = pkg;
+      this.selected = selected;
+    }
+
+    @Override
+    public String name() {
+      return name;
+    }
+
+    @Override
+    public String code() {
+      return code;
+    }
+
+    @Override
+    public String pkg() {
+      return pkg;
+    }
+  }
+
+  static final class NullOutputStream extends OutputStream {
+
+    long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+
+  static final class NullWriter extends Writer {
+
+    long count;
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+      count += len;
+    }
+
+    @Override
+    public void write(String str) {
+      count += str.length();
+    }
+
+    @Override
+    public void write(int c) {
+      count++;
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
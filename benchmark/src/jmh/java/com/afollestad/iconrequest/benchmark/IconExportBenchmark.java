@@ -0,0 +1,92 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.benchmark.Fixtures.NullOutputStream;
+import com.afollestad.iconrequest.core.IconQuantizer;
+import com.afollestad.iconrequest.core.IconScaler;
+import com.afollestad.iconrequest.core.IndexedPngWriter;
+import com.afollestad.iconrequest.core.RequestArchive;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding a request's icons with each combination of the icon export options, reporting the
+ * archive size next to the encode time. Truecolor PNG goes through ImageIO in place of the
+ * platform encoder; WebP has no encoder on the JVM, so it can only be compared on a device.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IconExportBenchmark {
+
+  /** xxxhdpi adaptive icons are 432 pixels, 0 keeps them at full size. */
+  @Param({"0", "192", "96"})
+  public int maxSize;
+
+  /** 0 writes truecolor PNGs, otherwise palette PNGs with this many colors. */
+  @Param({"0", "256", "64"})
+  public int paletteSize;
+
+  @Param({"50"})
+  public int apps;
+
+  private int[][] icons;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(42);
+    icons = new int[apps][];
+    for (int i = 0; i < apps; i++) {
+      icons[i] = Fixtures.iconPixels(random, 432);
+    }
+  }
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Output {
+
+    public long archiveBytes;
+  }
+
+  @Benchmark
+  public long encodeAndZip(Output output) throws Exception {
+    final NullOutputStream out = new NullOutputStream();
+    final RequestArchive archive = new RequestArchive(out);
+    final ByteArrayOutputStream icon = new ByteArrayOutputStream(64 * 1024);
+    for (int i = 0; i < icons.length; i++) {
+      final int[] size = IconScaler.fit(432, 432, maxSize);
+      final int[] pixels = IconScaler.scale(icons[i], 432, 432, size[0], size[1]);
+      icon.reset();
+      if (paletteSize > 0) {
+        final IconQuantizer.Result quantized = IconQuantizer.quantize(pixels, paletteSize);
+        IndexedPngWriter.write(icon, size[0], size[1], quantized.palette, quantized.indices);
+      } else {
+        final BufferedImage image =
+            new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, size[0], size[1], pixels, 0, size[0]);
+        ImageIO.write(image, "png", icon);
+      }
+      archive.putBytes(Fixtures.pkg(i) + ".png", icon.toByteArray());
+    }
+    archive.close();
+    output.archiveBytes = out.count;
+    return out.count;
+  }
+}
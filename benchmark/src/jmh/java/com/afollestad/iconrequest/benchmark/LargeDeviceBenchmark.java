@@ -0,0 +1,157 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.benchmark.Fixtures.App;
+import com.afollestad.iconrequest.core.AppFilterParser;
+import com.afollestad.iconrequest.core.AppFilterWriter;
+import com.afollestad.iconrequest.core.ComponentJoin;
+import com.afollestad.iconrequest.core.RequestArchive;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end load, select all and send on a synthetic large device: a 15k entry appfilter and
+ * hundreds to thousands of installed apps. Package manager and bitmap work are replaced by their
+ * core equivalents (inventory join, pre-encoded icons), so this measures everything the library
+ * does around them. Peak heap of each run is reported as an extra counter. LargeDeviceTest in the
+ * library module runs the same scenario through PolarRequest under Robolectric.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx512m"})
+public class LargeDeviceBenchmark {
+
+  @Param({"600", "2000", "5000"})
+  public int apps;
+
+  @Param({"15000"})
+  public int entries;
+
+  private byte[] appFilter;
+  private List<App> installed;
+  private byte[][] icons;
+  private File workDir;
+
+  @Setup
+  public void setup() throws Exception {
+    appFilter = Fixtures.appFilter(entries);
+    installed = Fixtures.apps(apps);
+    final Random random = new Random(42);
+    icons = new byte[apps][];
+    for (int i = 0; i < apps; i++) {
+      icons[i] = Fixtures.icon(random, 16384);
+    }
+    workDir = File.createTempFile("large-device", "");
+    if (!workDir.delete() || !workDir.mkdirs()) {
+      throw new IllegalStateException("Unable to create " + workDir);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    final File[] files = workDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    workDir.delete();
+  }
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Heap {
+
+    public long peakHeapBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      System.gc();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          pool.resetPeakUsage();
+        }
+      }
+    }
+
+    void sample() {
+      long peak = 0;
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          peak += pool.getPeakUsage().getUsed();
+        }
+      }
+      peakHeapBytes = peak;
+    }
+  }
+
+  @Benchmark
+  public long loadSelectAllAndSend(Heap heap) throws Exception {
+    // Load: parse the filter and drop themed apps
+    final HashSet<String> filter =
+        AppFilterParser.readComponents(new ByteArrayInputStream(appFilter));
+    final List<App> unthemed = ComponentJoin.unthemed(installed, App::code, filter);
+
+    // Select all, going through the same index a reload's state transfer uses
+    final HashMap<String, Integer> index = ComponentJoin.index(unthemed, App::code);
+    final List<App> selected = new ArrayList<>(unthemed.size());
+    for (App app : unthemed) {
+      if (index.get(app.code()) != null) {
+        selected.add(app);
+      }
+    }
+
+    // Send: appfilter, JSON and the archive with every icon
+    final File appFilterFile = new File(workDir, "appfilter.xml");
+    try (Writer writer =
+        new OutputStreamWriter(new FileOutputStream(appFilterFile), Charset.forName("UTF-8"))) {
+      AppFilterWriter.writeXml(writer, selected);
+    }
+    final Fixtures.NullWriter json = new Fixtures.NullWriter();
+    AppFilterWriter.writeJson(json, selected);
+
+    final File zipFile = new File(workDir, "IconRequest.zip");
+    try (RequestArchive archive =
+        new RequestArchive(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+      for (int i = 0; i < selected.size(); i++) {
+        archive.putBytes(selected.get(i).pkg() + ".png", icons[i]);
+      }
+      archive.putFile(appFilterFile);
+    }
+
+    heap.sample();
+    return zipFile.length() + json.count;
+  }
+}
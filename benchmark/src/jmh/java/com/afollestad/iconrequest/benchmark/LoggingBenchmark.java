@@ -0,0 +1,67 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.core.AppFilterParser;
+import com.afollestad.iconrequest.core.Logging;
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parse cost with the per-item "Found: %s (%s)" debug log AppFilterAssets emits. The DEBUG level
+ * formats every message like IRLog always did before it was level-gated, NONE is the release
+ * default. The sink discards messages so only formatting is measured, not logcat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingBenchmark {
+
+  @Param({"1000", "5000", "20000"})
+  public int entries;
+
+  @Param({"DEBUG", "NONE"})
+  public String level;
+
+  private byte[] appFilter;
+
+  @Setup
+  public void setup(Blackhole blackhole) {
+    appFilter = Fixtures.appFilter(entries);
+    Logging.setLevel(level.equals("DEBUG") ? Logging.DEBUG : Logging.NONE);
+    Logging.setSink((priority, tag, message) -> blackhole.consume(message));
+  }
+
+  @TearDown
+  public void tearDown() {
+    Logging.setLevel(Logging.WARN);
+    Logging.setSink(null);
+  }
+
+  @Benchmark
+  public HashSet<String> parseAndLog() throws Exception {
+    final HashSet<String> defined = new HashSet<>();
+    AppFilterParser.parse(
+        new ByteArrayInputStream(appFilter),
+        (component, drawable) -> {
+          Logging.log(Logging.DEBUG, "AppFilterAssets", "Found: %s (%s)", component, drawable);
+          defined.add(component);
+        });
+    return defined;
+  }
+}
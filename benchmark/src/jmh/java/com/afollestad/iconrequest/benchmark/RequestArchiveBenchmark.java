@@ -0,0 +1,55 @@
+package com.afollestad.iconrequest.benchmark;
+
+import com.afollestad.iconrequest.benchmark.Fixtures.NullOutputStream;
+import com.afollestad.iconrequest.core.RequestArchive;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Zipping a request's icons, sized like xxxhdpi PNGs. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestArchiveBenchmark {
+
+  @Param({"100", "1000", "5000"})
+  public int apps;
+
+  @Param({"16384"})
+  public int iconBytes;
+
+  private byte[][] icons;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(42);
+    icons = new byte[apps][];
+    for (int i = 0; i < apps; i++) {
+      icons[i] = Fixtures.icon(random, iconBytes);
+    }
+  }
+
+  @Benchmark
+  public long zip() throws Exception {
+    final NullOutputStream out = new NullOutputStream();
+    final RequestArchive archive = new RequestArchive(out);
+    for (int i = 0; i < icons.length; i++) {
+      archive.putBytes(Fixtures.pkg(i) + ".png", icons[i]);
+    }
+    archive.close();
+    return out.count;
+  }
+}
@@ -0,0 +1,153 @@
+package com.afollestad.iconrequest.cli;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Aggregates a directory of IconRequest-*.zip archives into a ranked demand report, plus one
+ * representative icon per component.
+ *
+ * <pre>
+ * aggregate-requests [--threads N] [--icons N] archive-dir output-dir
+ * </pre>
+ *
+ * Writes demand.csv (rank, requests, component, name, drawable, icon) and icons/ to output-dir.
+ * --icons limits icon extraction to the N most requested components, by default all of them.
+ */
+public class AggregateRequests {
+
+  public static void main(String[] args) throws Exception {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int iconLimit = Integer.MAX_VALUE;
+    int i = 0;
+    for (; i < args.length && args[i].startsWith("--"); i += 2) {
+      if (i + 1 >= args.length) usage();
+      switch (args[i]) {
+        case "--threads":
+          threads = Integer.parseInt(args[i + 1]);
+          break;
+        case "--icons":
+          iconLimit = Integer.parseInt(args[i + 1]);
+          break;
+        default:
+          usage();
+      }
+    }
+    if (args.length - i != 2) usage();
+    final Path archiveDir = Paths.get(args[i]);
+    final Path outputDir = Paths.get(args[i + 1]);
+
+    final long start = System.nanoTime();
+    final RequestAggregator aggregator = new RequestAggregator(threads);
+    try (Stream<Path> paths = Files.walk(archiveDir)) {
+      final Iterator<Path> it = paths.iterator();
+      while (it.hasNext()) {
+        final Path path = it.next();
+        if (path.getFileName().toString().endsWith(".zip") && Files.isRegularFile(path)) {
+          aggregator.submit(path.toFile());
+        }
+      }
+    }
+    final List<ComponentDemand> ranked = aggregator.finish();
+
+    Files.createDirectories(outputDir.resolve("icons"));
+    writeReport(outputDir, ranked, iconLimit);
+    ranked
+        .subList(0, Math.min(iconLimit, ranked.size()))
+        .parallelStream()
+        .filter(demand -> demand.iconEntry() != null)
+        .forEach(demand -> extractIcon(demand, iconPath(outputDir, demand)));
+    System.out.printf(
+        "Read %d archive(s) (%d failed), %d unique component(s) in %d ms.%n",
+        aggregator.archiveCount(),
+        aggregator.failureCount(),
+        ranked.size(),
+        (System.nanoTime() - start) / 1_000_000L);
+  }
+
+  private static void writeReport(Path outputDir, List<ComponentDemand> ranked, int iconLimit)
+      throws Exception {
+    final Charset utf8 = Charset.forName("UTF-8");
+    try (Writer out =
+        new BufferedWriter(
+            new OutputStreamWriter(
+                Files.newOutputStream(outputDir.resolve("demand.csv")), utf8))) {
+      out.write("rank,requests,component,name,drawable,icon\n");
+      for (int rank = 0; rank < ranked.size(); rank++) {
+        final ComponentDemand demand = ranked.get(rank);
+        String icon = "";
+        if (rank < iconLimit && demand.iconEntry() != null) {
+          icon = "icons/" + iconName(demand);
+        }
+        out.write(Integer.toString(rank + 1));
+        out.write(',');
+        out.write(Integer.toString(demand.requests.get()));
+        out.write(',');
+        writeCsv(out, demand.component);
+        out.write(',');
+        writeCsv(out, demand.name());
+        out.write(',');
+        writeCsv(out, demand.drawable());
+        out.write(',');
+        writeCsv(out, icon);
+        out.write('\n');
+      }
+    }
+  }
+
+  private static Path iconPath(Path outputDir, ComponentDemand demand) {
+    return outputDir.resolve("icons").resolve(iconName(demand));
+  }
+
+  /** Keeps the extension of the archive entry, icons can be PNG or WebP. */
+  private static String iconName(ComponentDemand demand) {
+    final String entry = demand.iconEntry();
+    return demand.component.replaceAll("[^A-Za-z0-9._-]", "_")
+        + entry.substring(entry.lastIndexOf('.'));
+  }
+
+  private static void extractIcon(ComponentDemand demand, Path target) {
+    final File archive = demand.iconArchive();
+    try (ZipFile zip = new ZipFile(archive)) {
+      final ZipEntry entry = zip.getEntry(demand.iconEntry());
+      try (InputStream is = zip.getInputStream(entry)) {
+        Files.copy(is, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (Exception e) {
+      System.err.println("Unable to extract the icon for " + demand.component + ": " + e);
+    }
+  }
+
+  private static void writeCsv(Writer out, String value) throws Exception {
+    if (value == null) return;
+    if (value.indexOf(',') == -1
+        && value.indexOf('"') == -1
+        && value.indexOf('\n') == -1
+        && value.indexOf('\r') == -1) {
+      out.write(value);
+      return;
+    }
+    out.write('"');
+    out.write(value.replace("\"", "\"\""));
+    out.write('"');
+  }
+
+  private static void usage() {
+    System.err.println(
+        "Usage: aggregate-requests [--threads N] [--icons N] <archive-dir> <output-dir>");
+    System.exit(1);
+  }
+}
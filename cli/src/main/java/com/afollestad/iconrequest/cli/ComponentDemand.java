@@ -0,0 +1,49 @@
+package com.afollestad.iconrequest.cli;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** How many archives requested a component, and the best icon seen for it so far. */
+class ComponentDemand {
+
+  final String component;
+  final AtomicInteger requests = new AtomicInteger();
+  private String name;
+  private String drawable;
+  private File iconArchive;
+  private String iconEntry;
+  private long iconSize = -1;
+
+  ComponentDemand(String component) {
+    this.component = component;
+  }
+
+  /** Keeps the first label seen and the largest icon, which is usually the highest density. */
+  synchronized void add(
+      String name, String drawable, File archive, String iconEntry, long iconSize) {
+    requests.incrementAndGet();
+    if (this.name == null) this.name = name;
+    if (this.drawable == null) this.drawable = drawable;
+    if (iconEntry != null && iconSize > this.iconSize) {
+      this.iconArchive = archive;
+      this.iconEntry = iconEntry;
+      this.iconSize = iconSize;
+    }
+  }
+
+  synchronized String name() {
+    return name;
+  }
+
+  synchronized String drawable() {
+    return drawable;
+  }
+
+  synchronized File iconArchive() {
+    return iconArchive;
+  }
+
+  synchronized String iconEntry() {
+    return iconEntry;
+  }
+}
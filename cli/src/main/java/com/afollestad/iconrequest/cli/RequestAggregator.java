@@ -0,0 +1,128 @@
+package com.afollestad.iconrequest.cli;
+
+import com.afollestad.iconrequest.core.AppFilterJsonParser;
+import com.afollestad.iconrequest.core.AppFilterParser;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads request archives in parallel and merges their components. Only the central directory, the
+ * appfilter and icon sizes are read from each ZIP, icons themselves are extracted later for the
+ * winning archive of each component, so memory stays proportional to the number of components.
+ */
+class RequestAggregator {
+
+  /** Icons are PNG, or WebP for apps exporting with PolarConfig.IconFormat.WEBP. */
+  private static final String[] ICON_EXTENSIONS = {".png", ".webp"};
+
+  private final ConcurrentHashMap<String, ComponentDemand> demands = new ConcurrentHashMap<>();
+  private final AtomicInteger archives = new AtomicInteger();
+  private final AtomicInteger failures = new AtomicInteger();
+  private final ExecutorService executor;
+  private final Semaphore inFlight;
+
+  RequestAggregator(int threads) {
+    this.executor = Executors.newFixedThreadPool(threads);
+    this.inFlight = new Semaphore(threads * 4);
+  }
+
+  /** Queues an archive, blocking while too many are waiting so huge directories stream through. */
+  void submit(File archive) throws InterruptedException {
+    inFlight.acquire();
+    executor.execute(
+        () -> {
+          try {
+            read(archive);
+            archives.incrementAndGet();
+          } catch (Exception e) {
+            failures.incrementAndGet();
+            System.err.println("Skipping " + archive + ": " + e);
+          } finally {
+            inFlight.release();
+          }
+        });
+  }
+
+  /** Waits for every submitted archive, returning the components ranked by demand. */
+  List<ComponentDemand> finish() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    final List<ComponentDemand> ranked = new ArrayList<>(demands.values());
+    ranked.sort(
+        (a, b) -> {
+          final int byRequests = Integer.compare(b.requests.get(), a.requests.get());
+          return byRequests != 0 ? byRequests : a.component.compareTo(b.component);
+        });
+    return ranked;
+  }
+
+  int archiveCount() {
+    return archives.get();
+  }
+
+  int failureCount() {
+    return failures.get();
+  }
+
+  private void read(File archive) throws Exception {
+    try (ZipFile zip = new ZipFile(archive)) {
+      // The same component can show up twice in one archive, it still counts as one request
+      final HashSet<String> seen = new HashSet<>();
+      final ZipEntry json = zip.getEntry("appfilter.json");
+      if (json != null) {
+        try (InputStream is = zip.getInputStream(json)) {
+          AppFilterJsonParser.parse(
+              is,
+              (name, pkg, component, drawable) -> {
+                if (seen.add(component)) record(zip, archive, component, name, pkg, drawable);
+              });
+        }
+        return;
+      }
+      final ZipEntry xml = zip.getEntry("appfilter.xml");
+      if (xml == null) {
+        throw new Exception("No appfilter.xml or appfilter.json");
+      }
+      try (InputStream is = zip.getInputStream(xml)) {
+        AppFilterParser.parse(
+            is,
+            (component, drawable) -> {
+              if (component != null && seen.add(component)) {
+                record(zip, archive, component, null, null, drawable);
+              }
+            });
+      }
+    }
+  }
+
+  private void record(
+      ZipFile zip, File archive, String component, String name, String pkg, String drawable) {
+    if (pkg == null) {
+      final int slash = component.indexOf('/');
+      pkg = slash == -1 ? component : component.substring(0, slash);
+    }
+    ZipEntry icon = null;
+    for (int i = 0; icon == null && i < ICON_EXTENSIONS.length; i++) {
+      icon = zip.getEntry(pkg + ICON_EXTENSIONS[i]);
+    }
+    demands
+        .computeIfAbsent(component, ComponentDemand::new)
+        .add(
+            name,
+            drawable,
+            archive,
+            icon != null ? icon.getName() : null,
+            icon != null ? icon.getSize() : -1);
+  }
+}
@@ -0,0 +1,126 @@
+package com.afollestad.iconrequest.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Archives in both filter formats merged into components ranked by demand. */
+public class RequestAggregatorTest {
+
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void ranksComponentsAcrossArchives() throws Exception {
+    final File json =
+        archive(
+            "json.zip",
+            "appfilter.json",
+            "{\"components\": ["
+                + item("Alpha", "com.alpha")
+                + ","
+                + item("Alpha", "com.alpha")
+                + ","
+                + item("Beta", "com.beta")
+                + "]}",
+            "com.alpha.webp",
+            4,
+            "com.beta.png",
+            2);
+    final File xml =
+        archive(
+            "xml.zip",
+            "appfilter.xml",
+            "<resources>\n"
+                + "    <item\n"
+                + "        component=\"ComponentInfo{com.alpha/.Main}\"\n"
+                + "        drawable=\"alpha\" />\n"
+                + "</resources>",
+            "com.alpha.png",
+            8);
+    final File broken = archive("broken.zip", "readme.txt", "No filter here");
+
+    final RequestAggregator aggregator = new RequestAggregator(2);
+    aggregator.submit(json);
+    aggregator.submit(xml);
+    aggregator.submit(broken);
+    final List<ComponentDemand> ranked = aggregator.finish();
+
+    assertEquals(2, aggregator.archiveCount());
+    assertEquals(1, aggregator.failureCount());
+    assertEquals(2, ranked.size());
+
+    // Duplicates within one archive count once, the largest icon of any extension wins
+    final ComponentDemand alpha = ranked.get(0);
+    assertEquals("com.alpha/.Main", alpha.component);
+    assertEquals(2, alpha.requests.get());
+    assertEquals("Alpha", alpha.name());
+    assertEquals("alpha", alpha.drawable());
+    assertEquals(xml, alpha.iconArchive());
+    assertEquals("com.alpha.png", alpha.iconEntry());
+
+    final ComponentDemand beta = ranked.get(1);
+    assertEquals("com.beta/.Main", beta.component);
+    assertEquals(1, beta.requests.get());
+    assertEquals(json, beta.iconArchive());
+    assertEquals("com.beta.png", beta.iconEntry());
+  }
+
+  @Test
+  public void componentsWithoutIcons() throws Exception {
+    final File xml =
+        archive(
+            "xml.zip",
+            "appfilter.xml",
+            "<resources>\n"
+                + "    <item component=\"ComponentInfo{com.gamma/.Main}\" drawable=\"gamma\" />\n"
+                + "</resources>");
+
+    final RequestAggregator aggregator = new RequestAggregator(1);
+    aggregator.submit(xml);
+    final List<ComponentDemand> ranked = aggregator.finish();
+
+    assertEquals(1, ranked.size());
+    assertNull(ranked.get(0).name());
+    assertNull(ranked.get(0).iconEntry());
+  }
+
+  private static String item(String name, String pkg) {
+    return String.format(
+        "{\"name\": \"%s\", \"pkg\": \"%s\", \"componentInfo\": \"%s/.Main\","
+            + " \"drawable\": \"%s\"}",
+        name,
+        pkg,
+        pkg,
+        name.toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Writes a ZIP with a text entry followed by name and size pairs of icon entries, filled with
+   * that many bytes.
+   */
+  private File archive(String fileName, String entry, String text, Object... icons)
+      throws Exception {
+    final File file = temp.newFile(fileName);
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+      zip.putNextEntry(new ZipEntry(entry));
+      zip.write(text.getBytes(Charset.forName("UTF-8")));
+      zip.closeEntry();
+      for (int i = 0; i < icons.length; i += 2) {
+        zip.putNextEntry(new ZipEntry((String) icons[i]));
+        zip.write(new byte[(Integer) icons[i + 1]]);
+        zip.closeEntry();
+      }
+    }
+    return file;
+  }
+}
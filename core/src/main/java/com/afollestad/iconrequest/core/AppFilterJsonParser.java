@@ -0,0 +1,199 @@
+package com.afollestad.iconrequest.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Streaming reader for the appfilter.json files {@link AppFilterWriter#writeJson} generates. Every
+ * object with a componentInfo field is passed to the handler, without building a JSON tree.
+ */
+public final class AppFilterJsonParser {
+
+  private final Reader reader;
+  private int peeked = -2;
+
+  private AppFilterJsonParser(Reader reader) {
+    this.reader = reader;
+  }
+
+  public interface Handler {
+
+    void onComponent(String name, String pkg, String component, String drawable) throws Exception;
+  }
+
+  /** A handler which also receives the iconHash field, see {@link AppFilterWriter}. */
+  public interface IconHashHandler extends Handler {
+
+    void onIconHash(String component, String iconHash) throws Exception;
+  }
+
+  public static int parse(InputStream is, Handler handler) throws Exception {
+    return parse(new InputStreamReader(is, Charset.forName("UTF-8")), handler);
+  }
+
+  public static int parse(Reader in, Handler handler) throws Exception {
+    final Reader reader = in instanceof BufferedReader ? in : new BufferedReader(in);
+    return new AppFilterJsonParser(reader).value(handler);
+  }
+
+  /** Reads one value, returning the number of components found inside of it. */
+  private int value(Handler handler) throws Exception {
+    final int c = next();
+    switch (c) {
+      case '{':
+        return object(handler);
+      case '[':
+        return array(handler);
+      case '"':
+        string();
+        return 0;
+      case -1:
+        throw new IOException("Unexpected end of JSON");
+      default:
+        literal();
+        return 0;
+    }
+  }
+
+  private int object(Handler handler) throws Exception {
+    String name = null;
+    String pkg = null;
+    String component = null;
+    String drawable = null;
+    String iconHash = null;
+    int count = 0;
+    int c = next();
+    if (c == '}') return 0;
+    while (true) {
+      if (c != '"') throw new IOException("Expected a field name, got " + (char) c);
+      final String key = string();
+      if (next() != ':') throw new IOException("Expected ':' after " + key);
+      if (peek() == '"') {
+        next();
+        final String value = string();
+        switch (key) {
+          case "name":
+            name = value;
+            break;
+          case "pkg":
+            pkg = value;
+            break;
+          case "componentInfo":
+            component = value;
+            break;
+          case "drawable":
+            drawable = value;
+            break;
+          case "iconHash":
+            iconHash = value;
+            break;
+          default:
+            break;
+        }
+      } else {
+        count += value(handler);
+      }
+      c = next();
+      if (c == '}') break;
+      if (c != ',') throw new IOException("Expected ',' or '}', got " + (char) c);
+      c = next();
+    }
+    if (component != null) {
+      if (iconHash != null && handler instanceof IconHashHandler) {
+        ((IconHashHandler) handler).onIconHash(component, iconHash);
+      }
+      handler.onComponent(name, pkg, component, drawable);
+      count++;
+    }
+    return count;
+  }
+
+  private int array(Handler handler) throws Exception {
+    int count = 0;
+    if (peek() == ']') {
+      next();
+      return 0;
+    }
+    while (true) {
+      count += value(handler);
+      final int c = next();
+      if (c == ']') return count;
+      if (c != ',') throw new IOException("Expected ',' or ']', got " + (char) c);
+    }
+  }
+
+  private String string() throws IOException {
+    final StringBuilder sb = new StringBuilder(32);
+    while (true) {
+      int c = reader.read();
+      if (c == -1) throw new IOException("Unterminated string");
+      if (c == '"') return sb.toString();
+      if (c == '\\') {
+        c = reader.read();
+        switch (c) {
+          case 'n':
+            sb.append('\n');
+            break;
+          case 'r':
+            sb.append('\r');
+            break;
+          case 't':
+            sb.append('\t');
+            break;
+          case 'b':
+            sb.append('\b');
+            break;
+          case 'f':
+            sb.append('\f');
+            break;
+          case 'u':
+            final char[] hex = new char[4];
+            for (int i = 0; i < 4; i++) {
+              final int h = reader.read();
+              if (h == -1) throw new IOException("Unterminated escape");
+              hex[i] = (char) h;
+            }
+            sb.append((char) Integer.parseInt(new String(hex), 16));
+            break;
+          case -1:
+            throw new IOException("Unterminated escape");
+          default:
+            sb.append((char) c);
+        }
+      } else {
+        sb.append((char) c);
+      }
+    }
+  }
+
+  /** Skips numbers, true, false and null. */
+  private void literal() throws IOException {
+    while (true) {
+      final int c = peek();
+      if (c == -1 || c == ',' || c == '}' || c == ']') return;
+      peeked = -2;
+    }
+  }
+
+  /** The next non-whitespace character, consumed. */
+  private int next() throws IOException {
+    final int c = peek();
+    peeked = -2;
+    return c;
+  }
+
+  private int peek() throws IOException {
+    if (peeked == -2) {
+      int c;
+      do {
+        c = reader.read();
+      } while (c != -1 && Character.isWhitespace(c));
+      peeked = c;
+    }
+    return peeked;
+  }
+}
@@ -0,0 +1,151 @@
+package com.afollestad.iconrequest.core;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+
+/**
+ * Line based appfilter.xml reader. It only looks for component and drawable attributes, which is
+ * a lot cheaper than a full XML pull parser for filters with tens of thousands of items.
+ */
+public final class AppFilterParser {
+
+  private static final String ITEM_END = "/>";
+  private static final String COMPONENT_START = "component=\"ComponentInfo";
+  private static final String DRAWABLE_START = "drawable=\"";
+  private static final String ATTR_END = "\"";
+  private static final String COMMENT_START = "<!--";
+  private static final String COMMENT_END = "-->";
+
+  private AppFilterParser() {}
+
+  public interface Handler {
+
+    /**
+     * Called for every closed item. Either value may be null if the item didn't declare it, the
+     * component has its ComponentInfo{} wrapper removed.
+     */
+    void onItem(String component, String drawable) throws Exception;
+  }
+
+  /** Parses the filter, returning the number of items passed to the handler. */
+  public static int parse(InputStream is, Handler handler) throws Exception {
+    return parse(new InputStreamReader(is, Charset.forName("UTF-8")), handler);
+  }
+
+  public static int parse(Reader in, Handler handler) throws Exception {
+    final BufferedReader reader =
+        in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+    String component = null;
+    String drawable = null;
+    String line;
+    boolean inComment = false;
+    int count = 0;
+
+    while ((line = reader.readLine()) != null) {
+      final String trimmedLine = line.trim();
+      if (!inComment && trimmedLine.startsWith(COMMENT_START)) {
+        inComment = true;
+      }
+      if (inComment && trimmedLine.endsWith(COMMENT_END)) {
+        inComment = false;
+        continue;
+      }
+
+      if (inComment) continue;
+      int start;
+      int end;
+
+      start = line.indexOf(COMPONENT_START);
+      if (start != -1) {
+        start += COMPONENT_START.length();
+        end = line.indexOf(ATTR_END, start);
+        if (line.charAt(start) == '{') start++;
+        if (end > start && line.charAt(end - 1) == '}') end--;
+        component = unescape(line.substring(start, end));
+      }
+
+      start = line.indexOf(DRAWABLE_START);
+      if (start != -1) {
+        start += DRAWABLE_START.length();
+        end = line.indexOf(ATTR_END, start);
+        drawable = unescape(line.substring(start, end));
+      }
+
+      start = line.indexOf(ITEM_END);
+      if (start != -1 && (component != null || drawable != null)) {
+        handler.onItem(component, drawable);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Decodes the predefined XML entities and character references in an attribute value, which
+   * AppFilterWriter produces for names with quotes, ampersands or angle brackets. Anything that
+   * isn't a well-formed reference is kept as it is.
+   */
+  static String unescape(String value) {
+    int amp = value.indexOf('&');
+    if (amp == -1) {
+      return value;
+    }
+    final StringBuilder sb = new StringBuilder(value.length());
+    int copied = 0;
+    while (amp != -1) {
+      final int semicolon = value.indexOf(';', amp + 1);
+      if (semicolon == -1) {
+        break;
+      }
+      final String decoded = decodeEntity(value.substring(amp + 1, semicolon));
+      if (decoded != null) {
+        sb.append(value, copied, amp).append(decoded);
+        copied = semicolon + 1;
+        amp = value.indexOf('&', copied);
+      } else {
+        amp = value.indexOf('&', amp + 1);
+      }
+    }
+    return sb.append(value, copied, value.length()).toString();
+  }
+
+  private static String decodeEntity(String entity) {
+    switch (entity) {
+      case "quot":
+        return "\"";
+      case "amp":
+        return "&";
+      case "lt":
+        return "<";
+      case "gt":
+        return ">";
+      case "apos":
+        return "'";
+    }
+    if (entity.length() < 2 || entity.charAt(0) != '#') {
+      return null;
+    }
+    try {
+      final int codePoint =
+          entity.charAt(1) == 'x' || entity.charAt(1) == 'X'
+              ? Integer.parseInt(entity.substring(2), 16)
+              : Integer.parseInt(entity.substring(1));
+      return Character.isValidCodePoint(codePoint)
+          ? new String(Character.toChars(codePoint))
+          : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /** Reads every component in the filter, without validating drawables. */
+  public static HashSet<String> readComponents(InputStream is) throws Exception {
+    final HashSet<String> components = new HashSet<>();
+    parse(is, (component, drawable) -> components.add(component));
+    return components;
+  }
+}
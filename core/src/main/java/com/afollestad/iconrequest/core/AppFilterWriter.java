@@ -0,0 +1,137 @@
+package com.afollestad.iconrequest.core;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/** Generates the appfilter.xml and appfilter.json files which are put into request archives. */
+public final class AppFilterWriter {
+
+  private AppFilterWriter() {}
+
+  public static void writeXml(Writer out, List<? extends RequestedApp> apps) throws IOException {
+    out.write(
+        "<resources>\n"
+            + "    <iconback img1=\"iconback\" />\n"
+            + "    <iconmask img1=\"iconmask\" />\n"
+            + "    <iconupon img1=\"iconupon\" />\n"
+            + "    <scale factor=\"1.0\" />");
+    for (RequestedApp app : apps) {
+      final String name = app.name();
+      out.write("\n\n    <!-- ");
+      out.write(commentSafe(name));
+      out.write(" -->\n    <item\n        component=\"ComponentInfo{");
+      writeXmlEscaped(out, app.code());
+      out.write("}\"\n        drawable=\"");
+      writeXmlEscaped(out, Drawables.name(name));
+      out.write("\" />");
+    }
+    out.write("\n\n</resources>");
+    out.flush();
+  }
+
+  public static void writeJson(Writer out, List<? extends RequestedApp> apps) throws IOException {
+    writeJson(out, apps, null);
+  }
+
+  /**
+   * Like {@link #writeJson(Writer, List)}, adding an iconHash field to apps which have an entry in
+   * the map, keyed by component. The server uses it to find icons which aren't in the archive.
+   */
+  public static void writeJson(
+      Writer out, List<? extends RequestedApp> apps, Map<String, String> iconHashes)
+      throws IOException {
+    out.write("{\n    \"components\": [");
+    for (int i = 0; i < apps.size(); i++) {
+      final RequestedApp app = apps.get(i);
+      if (i > 0) out.write(",");
+      out.write("\n        {\n");
+      writeJsonField(out, "name", app.name(), true);
+      writeJsonField(out, "pkg", app.pkg(), true);
+      writeJsonField(out, "componentInfo", app.code(), true);
+      final String iconHash = iconHashes != null ? iconHashes.get(app.code()) : null;
+      writeJsonField(out, "drawable", Drawables.name(app.name()), iconHash != null);
+      if (iconHash != null) {
+        writeJsonField(out, "iconHash", iconHash, false);
+      }
+      out.write("        }");
+    }
+    out.write("\n    ]\n}");
+    out.flush();
+  }
+
+  private static void writeJsonField(Writer out, String key, String value, boolean more)
+      throws IOException {
+    out.write("            \"");
+    out.write(key);
+    out.write("\": \"");
+    writeJsonEscaped(out, value);
+    out.write(more ? "\",\n" : "\"\n");
+  }
+
+  static void writeJsonEscaped(Writer out, String value) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.write("\\\"");
+          break;
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.write(String.format("\\u%04x", (int) c));
+          } else {
+            out.write(c);
+          }
+      }
+    }
+  }
+
+  // "--" can't appear inside a comment, and a single pass would leave one behind in "---".
+  private static String commentSafe(String value) {
+    String safe = value;
+    while (safe.contains("--")) {
+      safe = safe.replace("--", "- -");
+    }
+    return safe;
+  }
+
+  private static void writeXmlEscaped(Writer out, String value) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.write("&quot;");
+          break;
+        case '&':
+          out.write("&amp;");
+          break;
+        case '<':
+          out.write("&lt;");
+          break;
+        case '>':
+          out.write("&gt;");
+          break;
+        default:
+          // A raw line break would split the attribute, which AppFilterParser reads per line
+          if (c < 0x20) {
+            out.write("&#" + (int) c + ";");
+          } else {
+            out.write(c);
+          }
+      }
+    }
+  }
+}
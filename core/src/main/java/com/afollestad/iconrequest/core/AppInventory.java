@@ -0,0 +1,198 @@
+package com.afollestad.iconrequest.core;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An immutable, compact list of apps for devices with thousands of them. Package names are pooled,
+ * so every app of a package shares one String. Components are stored as a package id and the class
+ * name relative to the package (".MainActivity" where possible), and labels and class names live
+ * in one flat char array. {@link #get(int)} returns a lightweight view which builds its strings on
+ * access, nothing is held per app besides a few array slots.
+ */
+public final class AppInventory implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String[] packages;
+  private final int[] packageIds;
+  private final int[] offsets;
+  private final char[] chars;
+
+  private AppInventory(String[] packages, int[] packageIds, int[] offsets, char[] chars) {
+    this.packages = packages;
+    this.packageIds = packageIds;
+    this.offsets = offsets;
+    this.chars = chars;
+  }
+
+  /** Copies apps into an inventory, in the same order. */
+  public static AppInventory of(List<? extends RequestedApp> apps) {
+    final Builder builder = new Builder(apps.size());
+    for (RequestedApp app : apps) {
+      builder.add(app.name(), app.code());
+    }
+    return builder.build();
+  }
+
+  public int size() {
+    return packageIds.length;
+  }
+
+  public String name(int index) {
+    return new String(chars, offsets[index * 2], offsets[index * 2 + 1] - offsets[index * 2]);
+  }
+
+  /** The pooled package name, the same instance for every app of the package. */
+  public String pkg(int index) {
+    return packages[packageIds[index]];
+  }
+
+  /** The launcher component, e.g. com.example/com.example.MainActivity. */
+  public String code(int index) {
+    final int start = offsets[index * 2 + 1];
+    final int length = offsets[index * 2 + 2] - start;
+    final String pkg = pkg(index);
+    final boolean relative = chars[start] == '.';
+    final char[] code = new char[pkg.length() * (relative ? 2 : 1) + 1 + length];
+    pkg.getChars(0, pkg.length(), code, 0);
+    int position = pkg.length();
+    code[position++] = '/';
+    if (relative) {
+      pkg.getChars(0, pkg.length(), code, position);
+      position += pkg.length();
+    }
+    System.arraycopy(chars, start, code, position, length);
+    return new String(code);
+  }
+
+  public RequestedApp get(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index " + index + " of " + size());
+    }
+    return new Entry(this, index);
+  }
+
+  /** Views the inventory as a list, each access returns a new {@link #get(int)} view. */
+  public List<RequestedApp> asList() {
+    return new AbstractList<RequestedApp>() {
+      @Override
+      public RequestedApp get(int index) {
+        return AppInventory.this.get(index);
+      }
+
+      @Override
+      public int size() {
+        return AppInventory.this.size();
+      }
+    };
+  }
+
+  public static final class Builder {
+
+    private final HashMap<String, Integer> packageIndex;
+    private String[] packages;
+    private int[] packageIds;
+    private int[] offsets;
+    private char[] chars;
+    private int size;
+
+    public Builder(int expectedApps) {
+      final int capacity = Math.max(1, expectedApps);
+      this.packageIndex = new HashMap<>(capacity * 4 / 3 + 1);
+      this.packages = new String[capacity];
+      this.packageIds = new int[capacity];
+      this.offsets = new int[capacity * 2 + 1];
+      this.chars = new char[capacity * 48];
+    }
+
+    /** Adds an app by its label and launcher component, e.g. com.example/.MainActivity. */
+    public Builder add(String name, String code) {
+      final int slash = code.indexOf('/');
+      if (slash <= 0 || slash == code.length() - 1) {
+        throw new IllegalArgumentException("Not a component: " + code);
+      }
+      final String pkg = code.substring(0, slash);
+      String className = code.substring(slash + 1);
+      if (className.length() > pkg.length()
+          && className.startsWith(pkg)
+          && className.charAt(pkg.length()) == '.') {
+        className = className.substring(pkg.length());
+      }
+
+      Integer id = packageIndex.get(pkg);
+      if (id == null) {
+        id = packageIndex.size();
+        if (id == packages.length) {
+          packages = Arrays.copyOf(packages, id * 2);
+        }
+        packages[id] = pkg;
+        packageIndex.put(pkg, id);
+      }
+
+      if (size == packageIds.length) {
+        packageIds = Arrays.copyOf(packageIds, size * 2);
+        offsets = Arrays.copyOf(offsets, size * 4 + 1);
+      }
+      packageIds[size] = id;
+      int position = offsets[size * 2];
+      position = append(name, position);
+      offsets[size * 2 + 1] = position;
+      position = append(className, position);
+      offsets[size * 2 + 2] = position;
+      size++;
+      return this;
+    }
+
+    private int append(String value, int position) {
+      if (position + value.length() > chars.length) {
+        chars = Arrays.copyOf(chars, Math.max(chars.length * 2, position + value.length()));
+      }
+      value.getChars(0, value.length(), chars, position);
+      return position + value.length();
+    }
+
+    /** Builds the inventory, trimming the arrays to their contents. */
+    public AppInventory build() {
+      return new AppInventory(
+          Arrays.copyOf(packages, packageIndex.size()),
+          Arrays.copyOf(packageIds, size),
+          Arrays.copyOf(offsets, size * 2 + 1),
+          Arrays.copyOf(chars, offsets[size * 2]));
+    }
+  }
+
+  private static final class Entry implements RequestedApp {
+
+    private final AppInventory inventory;
+    private final int index;
+
+    Entry(AppInventory inventory, int index) {
+      this.inventory = inventory;
+      this.index = index;
+    }
+
+    @Override
+    public String name() {
+      return inventory.name(index);
+    }
+
+    @Override
+    public String code() {
+      return inventory.code(index);
+    }
+
+    @Override
+    public String pkg() {
+      return inventory.pkg(index);
+    }
+
+    @Override
+    public String toString() {
+      return code();
+    }
+  }
+}
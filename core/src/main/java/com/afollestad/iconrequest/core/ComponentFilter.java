@@ -0,0 +1,316 @@
+package com.afollestad.iconrequest.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of appfilter components for very large packs. Components are stored as UTF-8
+ * bytes in one array, ordered by their String hash code, so 20k entries take about half the heap
+ * of a HashSet of Strings and serialize to little more than their text. Lookups binary search the
+ * hash codes and compare bytes only on a match, behind an optional Bloom filter which turns most
+ * misses into a few bit tests.
+ *
+ * <p>Filters can also be compiled ahead of time with {@link #writeTo(OutputStream)}, which the
+ * appfilter Gradle plugin does for {@code <name>}{@link #COMPILED_EXTENSION} assets, and read back
+ * with {@link #readFrom(InputStream)} without any parsing.
+ */
+public final class ComponentFilter extends AbstractSet<String> implements Serializable {
+
+  /** Appended to the appfilter's asset name for its compiled form, e.g. appfilter.xml.compiled. */
+  public static final String COMPILED_EXTENSION = ".compiled";
+
+  private static final long serialVersionUID = 1L;
+  private static final int COMPILED_MAGIC = 0x49524346; // IRCF
+  private static final int COMPILED_VERSION = 1;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int BLOOM_BITS_PER_ENTRY = 10;
+  private static final int BLOOM_HASHES = 7;
+  // Hash code first, then the strings themselves so equal components end up next to each other.
+  // Integer.compare is API 19, and Android apps down to API 14 use this.
+  private static final Comparator<String> BY_HASH =
+      (left, right) -> {
+        final int leftHash = left.hashCode();
+        final int rightHash = right.hashCode();
+        if (leftHash != rightHash) {
+          return leftHash < rightHash ? -1 : 1;
+        }
+        return left.compareTo(right);
+      };
+
+  private final byte[] bytes;
+  private final int[] offsets;
+  private final boolean bloomEnabled;
+  // Both rebuilt after deserialization, rather than written into saved state
+  private transient int[] hashes;
+  private transient long[] bloom;
+
+  private ComponentFilter(byte[] bytes, int[] offsets, boolean bloomEnabled) {
+    this.bytes = bytes;
+    this.offsets = offsets;
+    this.bloomEnabled = bloomEnabled;
+    index();
+  }
+
+  public static ComponentFilter of(Collection<String> components) {
+    return of(components, true);
+  }
+
+  /**
+   * Builds a filter from components, with or without the Bloom pre-check. Nulls, which the parser
+   * reports for items without a component, are skipped.
+   */
+  public static ComponentFilter of(Collection<String> components, boolean bloom) {
+    String[] sorted = new String[components.size()];
+    int count = 0;
+    for (String component : components) {
+      if (component != null) {
+        sorted[count++] = component;
+      }
+    }
+    sorted = Arrays.copyOf(sorted, count);
+    Arrays.sort(sorted, BY_HASH);
+    final byte[][] encoded = new byte[sorted.length][];
+    int length = 0;
+    int unique = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || !sorted[i - 1].equals(sorted[i])) {
+        encoded[unique] = sorted[i].getBytes(UTF_8);
+        length += encoded[unique++].length;
+      }
+    }
+    final byte[] bytes = new byte[length];
+    final int[] offsets = new int[unique + 1];
+    for (int i = 0; i < unique; i++) {
+      System.arraycopy(encoded[i], 0, bytes, offsets[i], encoded[i].length);
+      offsets[i + 1] = offsets[i] + encoded[i].length;
+    }
+    return new ComponentFilter(bytes, offsets, bloom);
+  }
+
+  /**
+   * Reads a filter written by {@link #writeTo(OutputStream)}. The components are copied as they
+   * are, only the hash table and Bloom filter are rebuilt. The stream isn't closed.
+   */
+  public static ComponentFilter readFrom(InputStream is) throws IOException {
+    final DataInputStream in = new DataInputStream(is);
+    if (in.readInt() != COMPILED_MAGIC) {
+      throw new IOException("Not a compiled appfilter.");
+    }
+    final int version = in.readInt();
+    if (version != COMPILED_VERSION) {
+      throw new IOException("Unsupported compiled appfilter version: " + version);
+    }
+    final boolean bloom = in.readBoolean();
+    final int count = in.readInt();
+    if (count < 0) {
+      throw new IOException("Corrupt compiled appfilter, " + count + " components.");
+    }
+    final int[] offsets = new int[count + 1];
+    for (int i = 1; i < offsets.length; i++) {
+      offsets[i] = in.readInt();
+      if (offsets[i] < offsets[i - 1]) {
+        throw new IOException("Corrupt compiled appfilter, offsets aren't ascending.");
+      }
+    }
+    final byte[] bytes = new byte[offsets[offsets.length - 1]];
+    in.readFully(bytes);
+    final ComponentFilter filter = new ComponentFilter(bytes, offsets, bloom);
+    for (int i = 1; i < filter.hashes.length; i++) {
+      if (filter.hashes[i] < filter.hashes[i - 1]) {
+        throw new IOException("Corrupt compiled appfilter, components aren't in hash order.");
+      }
+    }
+    return filter;
+  }
+
+  /** Writes the filter in its compiled form, see {@link #readFrom(InputStream)}. */
+  public void writeTo(OutputStream os) throws IOException {
+    final DataOutputStream out = new DataOutputStream(os);
+    out.writeInt(COMPILED_MAGIC);
+    out.writeInt(COMPILED_VERSION);
+    out.writeBoolean(bloomEnabled);
+    out.writeInt(size());
+    for (int i = 1; i < offsets.length; i++) {
+      out.writeInt(offsets[i]);
+    }
+    out.write(bytes);
+    out.flush();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof String)) {
+      return false;
+    }
+    final String key = (String) o;
+    final int hash = key.hashCode();
+    if (bloom != null && !mightContain(hash)) {
+      return false;
+    }
+    int low = 0;
+    int high = hashes.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (hashes[mid] < hash) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    for (int i = low; i < hashes.length && hashes[i] == hash; i++) {
+      if (matches(i, key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  /** Decodes the components, in hash code order. */
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < size();
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        final int start = offsets[next];
+        final int end = offsets[++next];
+        return new String(bytes, start, end - start, UTF_8);
+      }
+    };
+  }
+
+  // Components are almost always ASCII, whose chars are their UTF-8 bytes, so they are compared
+  // without encoding the key. Anything else is compared a code point at a time.
+  private boolean matches(int index, String key) {
+    final int end = offsets[index + 1];
+    int position = offsets[index];
+    int i = 0;
+    while (position < end && i < key.length()) {
+      final int b = bytes[position] & 0xff;
+      if (b < 0x80) {
+        if (b != key.charAt(i)) {
+          return false;
+        }
+        position++;
+        i++;
+        continue;
+      }
+      final int codePoint = decode(position);
+      if (codePoint != key.codePointAt(i)) {
+        return false;
+      }
+      position += utf8Length(codePoint);
+      i += Character.charCount(codePoint);
+    }
+    return position == end && i == key.length();
+  }
+
+  private int decode(int position) {
+    final int b = bytes[position] & 0xff;
+    if (b < 0xe0) {
+      return (b & 0x1f) << 6 | (bytes[position + 1] & 0x3f);
+    } else if (b < 0xf0) {
+      return (b & 0x0f) << 12 | (bytes[position + 1] & 0x3f) << 6 | (bytes[position + 2] & 0x3f);
+    }
+    return (b & 0x07) << 18
+        | (bytes[position + 1] & 0x3f) << 12
+        | (bytes[position + 2] & 0x3f) << 6
+        | (bytes[position + 3] & 0x3f);
+  }
+
+  private static int utf8Length(int codePoint) {
+    return codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+  }
+
+  private void index() {
+    hashes = new int[size()];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = stringHash(i);
+    }
+    bloom = bloomEnabled ? buildBloom() : null;
+  }
+
+  // String.hashCode() of an entry, which lookups usually find cached in their key.
+  private int stringHash(int index) {
+    final int start = offsets[index];
+    final int end = offsets[index + 1];
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      if (bytes[i] < 0) {
+        return new String(bytes, start, end - start, UTF_8).hashCode();
+      }
+      hash = 31 * hash + bytes[i];
+    }
+    return hash;
+  }
+
+  private long[] buildBloom() {
+    // A power of two number of words, so bits are picked with a mask rather than a division
+    final long bits = Math.max(64, (long) size() * BLOOM_BITS_PER_ENTRY);
+    final long[] words = new long[Integer.highestOneBit((int) ((bits + 63) / 64) * 2 - 1)];
+    final int mask = words.length * 64 - 1;
+    for (int stringHash : hashes) {
+      final long hash = mix(stringHash);
+      final int h1 = (int) hash;
+      final int h2 = (int) (hash >>> 32) | 1;
+      for (int k = 0; k < BLOOM_HASHES; k++) {
+        final int bit = (h1 + k * h2) & mask;
+        words[bit >>> 6] |= 1L << bit;
+      }
+    }
+    return words;
+  }
+
+  private boolean mightContain(int stringHash) {
+    final long hash = mix(stringHash);
+    final int mask = bloom.length * 64 - 1;
+    final int h1 = (int) hash;
+    final int h2 = (int) (hash >>> 32) | 1;
+    for (int k = 0; k < BLOOM_HASHES; k++) {
+      final int bit = (h1 + k * h2) & mask;
+      if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Spreads a 32-bit hash over 64 bits (MurmurHash3's finalizer), for double hashing.
+  private static long mix(int hash) {
+    long z = hash * 0x9e3779b97f4a7c15L;
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return z ^ (z >>> 33);
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    index();
+  }
+}
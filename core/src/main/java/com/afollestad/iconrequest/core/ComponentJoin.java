@@ -0,0 +1,70 @@
+package com.afollestad.iconrequest.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+/** Joins installed app inventories against appfilters and against each other by component. */
+public final class ComponentJoin {
+
+  private ComponentJoin() {}
+
+  public interface Key<T> {
+
+    String of(T item);
+  }
+
+  public interface Carry<T> {
+
+    /** Returns the reloaded item with the state of its previous version applied. */
+    T carry(T previous, T reloaded);
+  }
+
+  /** Builds a launcher component code, expanding class names relative to the package. */
+  public static String code(String pkg, String className) {
+    if (className.startsWith(".")) {
+      return pkg + "/" + pkg + className;
+    }
+    return pkg + "/" + className;
+  }
+
+  /** Returns the items whose component isn't in the filter, keeping their order. */
+  public static <T> List<T> unthemed(List<T> items, Key<T> key, Set<String> filter) {
+    final List<T> result = new ArrayList<>(items.size());
+    for (T item : items) {
+      if (!filter.contains(key.of(item))) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  /** Maps each item's component to its position, so lookups between two lists are O(1). */
+  public static <T> HashMap<String, Integer> index(List<T> items, Key<T> key) {
+    final HashMap<String, Integer> index = new HashMap<>(items.size() * 4 / 3 + 1);
+    for (int i = 0; i < items.size(); i++) {
+      index.put(key.of(items.get(i)), i);
+    }
+    return index;
+  }
+
+  /**
+   * Carries state from a previous load into a new one: each item of the new list whose component
+   * was also in the previous list is replaced with what carry returns for the pair. Returning the
+   * reloaded item as it is leaves that position untouched.
+   */
+  public static <T> void transfer(List<T> previous, List<T> reloaded, Key<T> key, Carry<T> carry) {
+    final HashMap<String, Integer> index = index(reloaded, key);
+    for (T item : previous) {
+      final Integer i = index.get(key.of(item));
+      if (i != null) {
+        final T current = reloaded.get(i);
+        final T carried = carry.carry(item, current);
+        if (carried != current) {
+          reloaded.set(i, carried);
+        }
+      }
+    }
+  }
+}
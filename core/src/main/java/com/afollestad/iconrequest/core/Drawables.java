@@ -0,0 +1,13 @@
+package com.afollestad.iconrequest.core;
+
+import java.util.Locale;
+
+public final class Drawables {
+
+  private Drawables() {}
+
+  /** The drawable name suggested for an app in generated appfilters. */
+  public static String name(String appName) {
+    return appName.toLowerCase(Locale.getDefault()).replace(" ", "_");
+  }
+}
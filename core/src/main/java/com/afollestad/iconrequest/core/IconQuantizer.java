@@ -0,0 +1,160 @@
+package com.afollestad.iconrequest.core;
+
+import java.util.Arrays;
+
+/**
+ * Reduces ARGB icon pixels to a palette with median cut, so they can be written as an indexed
+ * PNG. Icons with few enough distinct colors keep them exactly. There's no dithering, it tends to
+ * cost more bytes than it saves on flat icon artwork.
+ */
+public final class IconQuantizer {
+
+  /** The palette and one palette index per pixel. */
+  public static final class Result {
+
+    public final int[] palette;
+    public final byte[] indices;
+
+    Result(int[] palette, byte[] indices) {
+      this.palette = palette;
+      this.indices = indices;
+    }
+  }
+
+  private IconQuantizer() {}
+
+  public static Result quantize(int[] argb, int maxColors) {
+    if (maxColors < 2 || maxColors > 256) {
+      throw new IllegalArgumentException("maxColors must be between 2 and 256: " + maxColors);
+    }
+
+    // Distinct colors and how often they occur, sorted so pixels can be looked up
+    final int[] sorted = argb.clone();
+    Arrays.sort(sorted);
+    int distinct = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) distinct++;
+    }
+    final int[] colors = new int[distinct];
+    final int[] counts = new int[distinct];
+    for (int i = 0, c = -1; i < sorted.length; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) colors[++c] = sorted[i];
+      counts[c]++;
+    }
+
+    final int[] paletteOf = new int[distinct];
+    final int[] palette;
+    if (distinct <= maxColors) {
+      palette = colors.clone();
+      for (int i = 0; i < distinct; i++) paletteOf[i] = i;
+    } else {
+      palette = medianCut(colors, counts, maxColors, paletteOf);
+    }
+
+    final byte[] indices = new byte[argb.length];
+    for (int i = 0; i < argb.length; i++) {
+      indices[i] = (byte) paletteOf[Arrays.binarySearch(colors, argb[i])];
+    }
+    return new Result(palette, indices);
+  }
+
+  private static void score(
+      int[] colors,
+      int[] counts,
+      int[] order,
+      int start,
+      int end,
+      long[] scores,
+      int[] shifts,
+      int box) {
+    scores[box] = 0;
+    if (end - start < 2) return;
+    long pixels = 0;
+    for (int i = start; i < end; i++) pixels += counts[order[i]];
+    for (int shift = 0; shift < 32; shift += 8) {
+      int min = 255;
+      int max = 0;
+      for (int i = start; i < end; i++) {
+        final int v = (colors[order[i]] >>> shift) & 0xff;
+        if (v < min) min = v;
+        if (v > max) max = v;
+      }
+      final long score = (long) (max - min) * pixels;
+      if (score > scores[box]) {
+        scores[box] = score;
+        shifts[box] = shift;
+      }
+    }
+  }
+
+  /** Splits the color space into boxes, filling paletteOf with each color's box. */
+  private static int[] medianCut(int[] colors, int[] counts, int maxColors, int[] paletteOf) {
+    final int[] order = new int[colors.length];
+    for (int i = 0; i < order.length; i++) order[i] = i;
+    // Boxes are ranges of order, [starts[i], ends[i])
+    final int[] starts = new int[maxColors];
+    final int[] ends = new int[maxColors];
+    ends[0] = colors.length;
+    int boxes = 1;
+    final long[] keys = new long[colors.length];
+
+    // Each box's widest channel range weighted by its pixel count, the widest box is split next
+    final long[] scores = new long[maxColors];
+    final int[] shifts = new int[maxColors];
+    score(colors, counts, order, starts[0], ends[0], scores, shifts, 0);
+
+    while (boxes < maxColors) {
+      int best = -1;
+      for (int box = 0; box < boxes; box++) {
+        if (scores[box] > 0 && (best == -1 || scores[box] > scores[best])) best = box;
+      }
+      if (best == -1) break;
+      final int bestShift = shifts[best];
+
+      final int start = starts[best];
+      final int end = ends[best];
+      for (int i = start; i < end; i++) {
+        keys[i] = (long) ((colors[order[i]] >>> bestShift) & 0xff) << 32 | order[i];
+      }
+      Arrays.sort(keys, start, end);
+      long total = 0;
+      for (int i = start; i < end; i++) {
+        order[i] = (int) keys[i];
+        total += counts[order[i]];
+      }
+      // Weighted median, leaving at least one color on each side
+      int split = start + 1;
+      long seen = counts[order[start]];
+      while (split < end - 1 && seen * 2 < total) {
+        seen += counts[order[split++]];
+      }
+      starts[boxes] = split;
+      ends[boxes] = end;
+      ends[best] = split;
+      score(colors, counts, order, start, split, scores, shifts, best);
+      score(colors, counts, order, split, end, scores, shifts, boxes);
+      boxes++;
+    }
+
+    final int[] palette = new int[boxes];
+    for (int box = 0; box < boxes; box++) {
+      long a = 0, r = 0, g = 0, b = 0, pixels = 0;
+      for (int i = starts[box]; i < ends[box]; i++) {
+        final int color = colors[order[i]];
+        final int count = counts[order[i]];
+        a += (long) (color >>> 24) * count;
+        r += (long) ((color >> 16) & 0xff) * count;
+        g += (long) ((color >> 8) & 0xff) * count;
+        b += (long) (color & 0xff) * count;
+        pixels += count;
+        paletteOf[order[i]] = box;
+      }
+      palette[box] =
+          (int) ((a + pixels / 2) / pixels) << 24
+              | (int) ((r + pixels / 2) / pixels) << 16
+              | (int) ((g + pixels / 2) / pixels) << 8
+              | (int) ((b + pixels / 2) / pixels);
+    }
+    return palette;
+  }
+}
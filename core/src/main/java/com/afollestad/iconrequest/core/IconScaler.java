@@ -0,0 +1,91 @@
+package com.afollestad.iconrequest.core;
+
+/**
+ * Area-averaging downscaler for ARGB icon pixels. Every source pixel contributes to the output by
+ * the fraction of it a destination pixel covers, with premultiplied alpha so transparent edges
+ * don't darken, which holds up at large reductions where bilinear filtering aliases.
+ */
+public final class IconScaler {
+
+  private IconScaler() {}
+
+  /** The size to scale to so the longest edge is at most maxSize, keeping the aspect ratio. */
+  public static int[] fit(int width, int height, int maxSize) {
+    if (maxSize <= 0 || (width <= maxSize && height <= maxSize)) {
+      return new int[] {width, height};
+    }
+    if (width >= height) {
+      return new int[] {maxSize, Math.max(1, Math.round(height * maxSize / (float) width))};
+    }
+    return new int[] {Math.max(1, Math.round(width * maxSize / (float) height)), maxSize};
+  }
+
+  /** Scales ARGB pixels down, the destination can't be larger than the source. */
+  public static int[] scale(int[] src, int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+    if (dstWidth > srcWidth || dstHeight > srcHeight) {
+      throw new IllegalArgumentException(
+          "Can't scale " + srcWidth + "x" + srcHeight + " up to " + dstWidth + "x" + dstHeight);
+    }
+    if (dstWidth == srcWidth && dstHeight == srcHeight) {
+      return src;
+    }
+
+    // Horizontal pass into premultiplied channels: a, r, g, b per pixel
+    final float[] rows = new float[dstWidth * srcHeight * 4];
+    final float scaleX = srcWidth / (float) dstWidth;
+    for (int y = 0; y < srcHeight; y++) {
+      final int srcRow = y * srcWidth;
+      for (int x = 0; x < dstWidth; x++) {
+        final float start = x * scaleX;
+        final float end = start + scaleX;
+        float a = 0, r = 0, g = 0, b = 0;
+        for (int sx = (int) start; sx < end && sx < srcWidth; sx++) {
+          final float weight = Math.min(end, sx + 1) - Math.max(start, sx);
+          final int p = src[srcRow + sx];
+          final float pa = (p >>> 24) * weight;
+          a += pa;
+          r += ((p >> 16) & 0xff) * pa;
+          g += ((p >> 8) & 0xff) * pa;
+          b += (p & 0xff) * pa;
+        }
+        final int i = (y * dstWidth + x) * 4;
+        rows[i] = a;
+        rows[i + 1] = r;
+        rows[i + 2] = g;
+        rows[i + 3] = b;
+      }
+    }
+
+    // Vertical pass, then back to straight ARGB
+    final int[] dst = new int[dstWidth * dstHeight];
+    final float scaleY = srcHeight / (float) dstHeight;
+    final float area = scaleX * scaleY;
+    for (int y = 0; y < dstHeight; y++) {
+      final float start = y * scaleY;
+      final float end = start + scaleY;
+      for (int x = 0; x < dstWidth; x++) {
+        float a = 0, r = 0, g = 0, b = 0;
+        for (int sy = (int) start; sy < end && sy < srcHeight; sy++) {
+          final float weight = Math.min(end, sy + 1) - Math.max(start, sy);
+          final int i = (sy * dstWidth + x) * 4;
+          a += rows[i] * weight;
+          r += rows[i + 1] * weight;
+          g += rows[i + 2] * weight;
+          b += rows[i + 3] * weight;
+        }
+        if (a <= 0) {
+          dst[y * dstWidth + x] = 0;
+          continue;
+        }
+        dst[y * dstWidth + x] =
+            clamp(a / area) << 24 | clamp(r / a) << 16 | clamp(g / a) << 8 | clamp(b / a);
+      }
+    }
+    return dst;
+  }
+
+  private static int clamp(float value) {
+    final int rounded = Math.round(value);
+    return rounded < 0 ? 0 : rounded > 255 ? 255 : rounded;
+  }
+}
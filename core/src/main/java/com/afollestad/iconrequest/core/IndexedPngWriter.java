@@ -0,0 +1,92 @@
+package com.afollestad.iconrequest.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes 8-bit palette PNGs from {@link IconQuantizer} output, with a tRNS chunk when the palette
+ * has transparency. Platform encoders only write truecolor, which is up to four times larger.
+ */
+public final class IndexedPngWriter {
+
+  private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+  private IndexedPngWriter() {}
+
+  public static void write(OutputStream out, int width, int height, int[] palette, byte[] indices)
+      throws IOException {
+    if (palette.length == 0 || palette.length > 256) {
+      throw new IllegalArgumentException("Palettes have 1 to 256 colors: " + palette.length);
+    }
+    if (indices.length != width * height) {
+      throw new IllegalArgumentException("Expected " + width * height + " pixels");
+    }
+    out.write(SIGNATURE);
+
+    final ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+    final DataOutputStream data = new DataOutputStream(header);
+    data.writeInt(width);
+    data.writeInt(height);
+    data.writeByte(8); // bit depth
+    data.writeByte(3); // color type: indexed
+    data.writeByte(0); // compression
+    data.writeByte(0); // filter
+    data.writeByte(0); // interlace
+    chunk(out, "IHDR", header.toByteArray());
+
+    final byte[] plte = new byte[palette.length * 3];
+    int lastTranslucent = -1;
+    for (int i = 0; i < palette.length; i++) {
+      plte[i * 3] = (byte) (palette[i] >> 16);
+      plte[i * 3 + 1] = (byte) (palette[i] >> 8);
+      plte[i * 3 + 2] = (byte) palette[i];
+      if ((palette[i] >>> 24) != 0xff) lastTranslucent = i;
+    }
+    chunk(out, "PLTE", plte);
+    if (lastTranslucent != -1) {
+      final byte[] trns = new byte[lastTranslucent + 1];
+      for (int i = 0; i < trns.length; i++) trns[i] = (byte) (palette[i] >>> 24);
+      chunk(out, "tRNS", trns);
+    }
+
+    // Rows go through filter type 0, palette indices don't predict well
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream(indices.length / 4);
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    try {
+      final DeflaterOutputStream deflate = new DeflaterOutputStream(compressed, deflater, 8192);
+      for (int y = 0; y < height; y++) {
+        deflate.write(0);
+        deflate.write(indices, y * width, width);
+      }
+      deflate.finish();
+    } finally {
+      deflater.end();
+    }
+    chunk(out, "IDAT", compressed.toByteArray());
+    chunk(out, "IEND", new byte[0]);
+    out.flush();
+  }
+
+  private static void chunk(OutputStream out, String type, byte[] data) throws IOException {
+    final byte[] typeBytes = type.getBytes("US-ASCII");
+    final CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data);
+    writeInt(out, data.length);
+    out.write(typeBytes);
+    out.write(data);
+    writeInt(out, (int) crc.getValue());
+  }
+
+  private static void writeInt(OutputStream out, int value) throws IOException {
+    out.write(value >>> 24);
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+}
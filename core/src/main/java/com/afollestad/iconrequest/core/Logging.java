@@ -0,0 +1,85 @@
+package com.afollestad.iconrequest.core;
+
+/**
+ * Level-gated logging shared by the library modules. Messages below {@link #setLevel(int)} are
+ * dropped before their arguments are formatted, so disabled logging costs a single int comparison.
+ * Priorities use the same values as android.util.Log.
+ */
+public final class Logging {
+
+  public static final int VERBOSE = 2;
+  public static final int DEBUG = 3;
+  public static final int INFO = 4;
+  public static final int WARN = 5;
+  public static final int ERROR = 6;
+  /** Disables all logging. */
+  public static final int NONE = Integer.MAX_VALUE;
+
+  private static final String DEFAULT_TAG = "IconRequest";
+
+  private static volatile int level = WARN;
+  private static volatile Sink sink = new StdErrSink();
+
+  private Logging() {}
+
+  /** Receives messages which passed the level check, already formatted. */
+  public interface Sink {
+
+    void log(int priority, String tag, String message);
+  }
+
+  public static void setLevel(int level) {
+    Logging.level = level;
+  }
+
+  public static int getLevel() {
+    return level;
+  }
+
+  /** Replaces the sink, pass null to restore the default which writes to stderr. */
+  public static void setSink(Sink sink) {
+    Logging.sink = sink != null ? sink : new StdErrSink();
+  }
+
+  public static boolean isLoggable(int priority) {
+    return priority >= level;
+  }
+
+  public static void log(int priority, String tag, String msg) {
+    if (isLoggable(priority)) {
+      write(priority, tag, msg, (Object[]) null);
+    }
+  }
+
+  public static void log(int priority, String tag, String msg, Object arg1) {
+    if (isLoggable(priority)) {
+      write(priority, tag, msg, arg1);
+    }
+  }
+
+  public static void log(int priority, String tag, String msg, Object arg1, Object arg2) {
+    if (isLoggable(priority)) {
+      write(priority, tag, msg, arg1, arg2);
+    }
+  }
+
+  public static void log(int priority, String tag, String msg, Object... args) {
+    if (isLoggable(priority)) {
+      write(priority, tag, msg, args);
+    }
+  }
+
+  private static void write(int priority, String tag, String msg, Object... args) {
+    if (tag == null) tag = DEFAULT_TAG;
+    if (args != null && args.length > 0) msg = String.format(msg, args);
+    sink.log(priority, tag, msg);
+  }
+
+  private static class StdErrSink implements Sink {
+
+    @Override
+    public void log(int priority, String tag, String message) {
+      System.err.println(tag + ": " + message);
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.afollestad.iconrequest.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Streams request files into a ZIP archive. */
+public final class RequestArchive implements Closeable {
+
+  private final ZipOutputStream out;
+  private final byte[] buffer;
+
+  public RequestArchive(OutputStream out) {
+    this.out = new ZipOutputStream(out);
+    this.buffer = new byte[8192];
+  }
+
+  public RequestArchive putFile(File file) throws IOException {
+    InputStream is = new FileInputStream(file);
+    try {
+      return putStream(file.getName(), is);
+    } finally {
+      is.close();
+    }
+  }
+
+  public RequestArchive putStream(String name, InputStream is) throws IOException {
+    out.putNextEntry(new ZipEntry(name));
+    int read;
+    while ((read = is.read(buffer)) != -1) out.write(buffer, 0, read);
+    out.closeEntry();
+    return this;
+  }
+
+  public RequestArchive putBytes(String name, byte[] content) throws IOException {
+    out.putNextEntry(new ZipEntry(name));
+    out.write(content);
+    out.closeEntry();
+    return this;
+  }
+
+  /** Gives direct access to the current entry, for writers that stream into the archive. */
+  public OutputStream beginEntry(String name) throws IOException {
+    out.putNextEntry(new ZipEntry(name));
+    return out;
+  }
+
+  public void endEntry() throws IOException {
+    out.closeEntry();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+}
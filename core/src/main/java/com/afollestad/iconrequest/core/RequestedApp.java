@@ -0,0 +1,13 @@
+package com.afollestad.iconrequest.core;
+
+/** An app which is put into a generated appfilter or request archive. */
+public interface RequestedApp {
+
+  /** The app's label. */
+  String name();
+
+  /** The launcher component, e.g. com.example/com.example.MainActivity. */
+  String code();
+
+  String pkg();
+}
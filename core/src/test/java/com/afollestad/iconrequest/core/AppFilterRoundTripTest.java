@@ -0,0 +1,142 @@
+package com.afollestad.iconrequest.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+/** Filters written by {@link AppFilterWriter} read back unchanged by both parsers. */
+public class AppFilterRoundTripTest {
+
+  private static final List<App> APPS =
+      Arrays.asList(
+          new App("Plain", "com.example.plain", "com.example.plain/com.example.plain.Main"),
+          new App("Tom & \"Jerry\" <3", "com.example.tom", "com.example.tom/.Main&Co"),
+          new App("Dashes -- and ---", "com.example.dash", "com.example.dash/.Main"),
+          new App("Tab\tLine\nBack\\slash", "com.example.ctrl", "com.example.ctrl/.Main\u0001"),
+          new App("Café 日本", "com.example.utf", "com.example.utf/.Main"));
+
+  @Test
+  public void xmlRoundTrip() throws Exception {
+    final StringWriter out = new StringWriter();
+    AppFilterWriter.writeXml(out, APPS);
+
+    final List<String> components = new ArrayList<>();
+    final List<String> drawables = new ArrayList<>();
+    final int count =
+        AppFilterParser.parse(
+            new StringReader(out.toString()),
+            (component, drawable) -> {
+              components.add(component);
+              drawables.add(drawable);
+            });
+
+    // Names only end up in comments, which the parser skips
+    assertEquals(APPS.size(), count);
+    for (int i = 0; i < APPS.size(); i++) {
+      assertEquals(APPS.get(i).code(), components.get(i));
+      assertEquals(Drawables.name(APPS.get(i).name()), drawables.get(i));
+    }
+  }
+
+  @Test
+  public void jsonRoundTrip() throws Exception {
+    final Map<String, String> iconHashes = new HashMap<>();
+    iconHashes.put(APPS.get(1).code(), "00ff");
+    final StringWriter out = new StringWriter();
+    AppFilterWriter.writeJson(out, APPS, iconHashes);
+
+    final List<App> parsed = new ArrayList<>();
+    final Map<String, String> parsedHashes = new HashMap<>();
+    final int count =
+        AppFilterJsonParser.parse(
+            new StringReader(out.toString()),
+            new AppFilterJsonParser.IconHashHandler() {
+              @Override
+              public void onIconHash(String component, String iconHash) {
+                parsedHashes.put(component, iconHash);
+              }
+
+              @Override
+              public void onComponent(String name, String pkg, String component, String drawable) {
+                parsed.add(new App(name, pkg, component));
+                assertEquals(Drawables.name(name), drawable);
+              }
+            });
+
+    assertEquals(APPS.size(), count);
+    assertEquals(APPS, parsed);
+    assertEquals(iconHashes, parsedHashes);
+  }
+
+  @Test
+  public void commentsNeverContainDoubleDashes() throws Exception {
+    final StringWriter out = new StringWriter();
+    AppFilterWriter.writeXml(out, Collections.singletonList(APPS.get(2)));
+    for (String line : out.toString().split("\n")) {
+      if (line.trim().startsWith("<!--")) {
+        final String body = line.trim();
+        assertEquals(-1, body.substring(4, body.length() - 3).indexOf("--"));
+      }
+    }
+  }
+
+  @Test
+  public void unescapesReferences() {
+    assertEquals("a\"b&c<d>e'f", AppFilterParser.unescape("a&quot;b&amp;c&lt;d&gt;e&apos;f"));
+    assertEquals("é€", AppFilterParser.unescape("&#233;&#x20AC;"));
+    assertEquals("&bogus; & &#xZZ;", AppFilterParser.unescape("&bogus; & &#xZZ;"));
+  }
+
+  private static final class App implements RequestedApp {
+
+    private final String name;
+    private final String pkg;
+    private final String code;
+
+    App(String name, String pkg, String code) {
+      this.name = name;
+      this.pkg = pkg;
+      this.code = code;
+    }
+
+    @Override
+    public String name() {
+      return name;
+    }
+
+    @Override
+    public String code() {
+      return code;
+    }
+
+    @Override
+    public String pkg() {
+      return pkg;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof App)) return false;
+      final App other = (App) o;
+      return name.equals(other.name) && pkg.equals(other.pkg) && code.equals(other.code);
+    }
+
+    @Override
+    public int hashCode() {
+      return code.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return name + " " + code;
+    }
+  }
+}
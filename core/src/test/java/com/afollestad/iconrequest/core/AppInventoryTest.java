@@ -0,0 +1,130 @@
+package com.afollestad.iconrequest.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class AppInventoryTest {
+
+  @Test
+  public void keepsAppsInOrder() {
+    final List<RequestedApp> apps = new ArrayList<>();
+    apps.add(app("Main", "com.example/com.example.MainActivity"));
+    apps.add(app("Settings", "com.example/com.example.settings.Settings"));
+    apps.add(app("Elsewhere", "com.example/org.other.Activity"));
+    apps.add(app("", "com.example.other/com.example.other."));
+    apps.add(app("日本 😀", "com.example.日本/com.example.日本.メイン"));
+
+    final AppInventory inventory = AppInventory.of(apps);
+    assertEquals(apps.size(), inventory.size());
+    for (int i = 0; i < apps.size(); i++) {
+      assertApp(apps.get(i), inventory.get(i));
+      assertApp(apps.get(i), inventory.asList().get(i));
+    }
+    // Package names are pooled
+    assertSame(inventory.pkg(0), inventory.pkg(1));
+    assertSame(inventory.pkg(0), inventory.pkg(2));
+  }
+
+  @Test
+  public void expandsRelativeComponents() {
+    final AppInventory inventory =
+        new AppInventory.Builder(1).add("Short", "com.example/.MainActivity").build();
+    assertEquals("com.example/com.example.MainActivity", inventory.code(0));
+  }
+
+  @Test
+  public void growsPastItsExpectedSize() {
+    final AppInventory.Builder builder = new AppInventory.Builder(0);
+    for (int i = 0; i < 1000; i++) {
+      builder.add(longName(i), "com.example.app" + i % 50 + "/com.example.Activity" + i);
+    }
+    final AppInventory inventory = builder.build();
+    assertEquals(1000, inventory.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(longName(i), inventory.name(i));
+      assertEquals("com.example.app" + i % 50, inventory.pkg(i));
+      assertEquals("com.example.app" + i % 50 + "/com.example.Activity" + i, inventory.code(i));
+    }
+  }
+
+  @Test
+  public void rejectsInvalidComponents() {
+    final AppInventory.Builder builder = new AppInventory.Builder(1);
+    for (String code : new String[] {"com.example", "/.Main", "com.example/"}) {
+      try {
+        builder.add("Invalid", code);
+        fail(code);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+    try {
+      builder.build().get(0);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  @Test
+  public void javaSerialization() throws Exception {
+    final List<RequestedApp> apps = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      apps.add(app("App " + i, "com.example.app" + i + "/com.example.app" + i + ".Main"));
+    }
+    apps.add(app("日本", "com.example.日本/.メイン"));
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(AppInventory.of(apps));
+    out.close();
+
+    final ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    final AppInventory read = (AppInventory) in.readObject();
+    assertEquals(apps.size(), read.size());
+    for (int i = 0; i < 100; i++) {
+      assertApp(apps.get(i), read.get(i));
+    }
+    assertEquals("com.example.日本/com.example.日本.メイン", read.code(100));
+  }
+
+  private static String longName(int index) {
+    final StringBuilder name = new StringBuilder("App ").append(index);
+    for (int i = 0; i < index % 7; i++) {
+      name.append(" with a rather long label");
+    }
+    return name.toString();
+  }
+
+  private static void assertApp(RequestedApp expected, RequestedApp actual) {
+    assertEquals(expected.name(), actual.name());
+    assertEquals(expected.code(), actual.code());
+    assertEquals(expected.pkg(), actual.pkg());
+  }
+
+  private static RequestedApp app(final String name, final String code) {
+    return new RequestedApp() {
+      @Override
+      public String name() {
+        return name;
+      }
+
+      @Override
+      public String code() {
+        return code;
+      }
+
+      @Override
+      public String pkg() {
+        return code.substring(0, code.indexOf('/'));
+      }
+    };
+  }
+}
@@ -0,0 +1,138 @@
+package com.afollestad.iconrequest.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Test;
+
+public class ComponentFilterTest {
+
+  private static final int COMPONENTS = 5000;
+
+  @Test
+  public void containsExactlyItsComponents() {
+    final List<String> components = components();
+    for (boolean bloom : new boolean[] {true, false}) {
+      final ComponentFilter filter = ComponentFilter.of(components, bloom);
+      assertEquals(new HashSet<>(components), new HashSet<>(filter));
+      // The Bloom filter may let misses through, but never drops a component
+      for (String component : components) {
+        assertTrue(component, filter.contains(component));
+      }
+      for (int i = 0; i < COMPONENTS; i++) {
+        assertFalse(filter.contains("com.missing" + i + "/.Main"));
+      }
+      assertFalse(filter.contains(null));
+      assertFalse(filter.contains(42));
+    }
+  }
+
+  @Test
+  public void nonAsciiComponents() {
+    final List<String> components =
+        Arrays.asList(
+            "com.example.café/.Main",
+            "com.example.日本/.メイン",
+            "com.example.emoji/.😀",
+            "com.example.ascii/.Main");
+    final ComponentFilter filter = ComponentFilter.of(components);
+    assertEquals(components.size(), filter.size());
+    for (String component : components) {
+      assertTrue(component, filter.contains(component));
+    }
+    assertEquals(new HashSet<>(components), new HashSet<>(filter));
+    // Same length and prefix, differing in a multi-byte character
+    assertFalse(filter.contains("com.example.cafè/.Main"));
+    assertFalse(filter.contains("com.example.日本/.メイ"));
+    assertFalse(filter.contains("com.example.emoji/.😁"));
+  }
+
+  @Test
+  public void duplicatesAndNullsAreSkipped() {
+    final ComponentFilter filter =
+        ComponentFilter.of(Arrays.asList("b/.B", null, "a/.A", "b/.B", "a/.A"));
+    assertEquals(2, filter.size());
+    assertTrue(filter.contains("a/.A"));
+    assertTrue(filter.contains("b/.B"));
+    assertEquals(0, ComponentFilter.of(new ArrayList<String>()).size());
+  }
+
+  @Test
+  public void compiledRoundTrip() throws Exception {
+    final List<String> components = components();
+    components.add("com.example.日本/.Main");
+    for (boolean bloom : new boolean[] {true, false}) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ComponentFilter.of(components, bloom).writeTo(out);
+      final ComponentFilter read =
+          ComponentFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+      assertEquals(new HashSet<>(components), new HashSet<>(read));
+      for (String component : components) {
+        assertTrue(component, read.contains(component));
+      }
+      assertFalse(read.contains("com.missing/.Main"));
+    }
+  }
+
+  @Test
+  public void rejectsCorruptCompiledFilters() throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ComponentFilter.of(Arrays.asList("a/.A", "b/.B", "c/.C")).writeTo(out);
+    final byte[] compiled = out.toByteArray();
+
+    final byte[] badMagic = compiled.clone();
+    badMagic[0] = 0;
+    assertRejected(badMagic);
+    final byte[] badVersion = compiled.clone();
+    badVersion[7] = 9;
+    assertRejected(badVersion);
+    assertRejected(Arrays.copyOf(compiled, compiled.length - 1));
+  }
+
+  @Test
+  public void javaSerialization() throws Exception {
+    final List<String> components = components();
+    components.add("com.example.日本/.Main");
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(ComponentFilter.of(components));
+    out.close();
+
+    final ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    final ComponentFilter read = (ComponentFilter) in.readObject();
+    assertEquals(new HashSet<>(components), new HashSet<>(read));
+    // The hash table and Bloom filter are rebuilt rather than serialized
+    for (String component : components) {
+      assertTrue(component, read.contains(component));
+    }
+    assertFalse(read.contains("com.missing/.Main"));
+  }
+
+  private static List<String> components() {
+    final List<String> components = new ArrayList<>(COMPONENTS + 1);
+    for (int i = 0; i < COMPONENTS; i++) {
+      components.add("com.example.app" + i + "/com.example.app" + i + ".MainActivity");
+    }
+    return components;
+  }
+
+  private static void assertRejected(byte[] compiled) {
+    try {
+      ComponentFilter.readFrom(new ByteArrayInputStream(compiled));
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+}
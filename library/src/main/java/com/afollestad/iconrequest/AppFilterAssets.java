@@ -2,151 +2,193 @@ package com.afollestad.iconrequest;
 
 import static com.afollestad.iconrequest.FileUtil.closeQuietly;
 import static com.afollestad.iconrequest.IRLog.log;
+import static com.afollestad.iconrequest.IRLog.warn;
 import static com.afollestad.iconrequest.IRUtils.isEmpty;
 
 import android.content.Context;
 import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.support.annotation.Nullable;
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import com.afollestad.iconrequest.FileUtil.CountingInputStream;
+import com.afollestad.iconrequest.PhaseMetric.Phase;
+import com.afollestad.iconrequest.core.AppFilterParser;
+import com.afollestad.iconrequest.core.ComponentFilter;
+import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
 import java.util.HashSet;
 
 class AppFilterAssets implements AppFilterSource {
 
   private static final String TAG = AppFilterAssets.class.getSimpleName();
   private final Context context;
+  private final Metrics metrics;
 
-  AppFilterAssets(Context context) {
+  AppFilterAssets(Context context, Metrics metrics) {
     this.context = context;
+    this.metrics = metrics;
   }
 
   @Override
   @Nullable
-  public HashSet<String> load(String filterName, boolean errorOnInvalidDrawables) throws Exception {
+  public ComponentFilter load(String filterName, boolean errorOnInvalidDrawables)
+      throws Exception {
+    IRTrace.begin("AppFilterAssets.load");
+    try {
+      if (!isEmpty(filterName)) {
+        final ComponentFilter compiled = loadCompiled(filterName);
+        if (compiled != null) {
+          return compiled;
+        }
+      }
+      final HashSet<String> defined = loadInternal(filterName, errorOnInvalidDrawables);
+      // The parsed set is only needed until it's compacted, the filter is kept for the session
+      final long start = metrics.now();
+      final ComponentFilter filter = ComponentFilter.of(defined);
+      metrics.record(Phase.LOAD_FILTER_INDEX, start, filter.size(), 0);
+      return filter;
+    } finally {
+      IRTrace.end();
+    }
+  }
+
+  /**
+   * Reads the filter compiled by the appfilter Gradle plugin, if the APK has one. Its drawables
+   * were validated at build time, so there's nothing left to check.
+   */
+  @Nullable
+  private ComponentFilter loadCompiled(String filterName) throws Exception {
+    final String compiledName = filterName + ComponentFilter.COMPILED_EXTENSION;
+    final long start = metrics.now();
+    CountingInputStream is;
+    IRTrace.begin("appfilter:compiled");
+    try {
+      is = new CountingInputStream(context.getAssets().open(compiledName));
+    } catch (FileNotFoundException e) {
+      log(TAG, "No compiled appfilter found, parsing %s.", filterName);
+      return null;
+    } finally {
+      IRTrace.end();
+    }
+    try {
+      final ComponentFilter filter = ComponentFilter.readFrom(new BufferedInputStream(is));
+      log(TAG, "Found %d total app(s) in your compiled appfilter.", filter.size());
+      metrics.record(Phase.LOAD_FILTER_COMPILED, start, filter.size(), is.getCount());
+      return filter;
+    } catch (final Throwable e) {
+      throw new Exception("Failed to read " + compiledName, e);
+    } finally {
+      closeQuietly(is);
+    }
+  }
+
+  private HashSet<String> loadInternal(String filterName, boolean errorOnInvalidDrawables)
+      throws Exception {
     final HashSet<String> defined = new HashSet<>();
     if (isEmpty(filterName)) {
       return defined;
     }
 
-    InputStream is;
+    CountingInputStream is;
+    long start = metrics.now();
+    IRTrace.begin("appfilter:open");
     try {
       final AssetManager am = context.getAssets();
       log(TAG, "Loading your appfilter, opening: %s", filterName);
-      is = am.open(filterName);
+      is = new CountingInputStream(am.open(filterName));
     } catch (final Throwable e) {
       throw new Exception("Failed to open " + filterName, e);
+    } finally {
+      IRTrace.end();
     }
+    metrics.record(Phase.LOAD_FILTER_OPEN, start, 1, 0);
 
-    BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-    StringBuilder invalidDrawables = null;
-
+    final DrawableValidator validator = new DrawableValidator(defined, errorOnInvalidDrawables);
+    start = metrics.now();
     try {
-      final String itemEndStr = "/>";
-      final String componentStartStr = "component=\"ComponentInfo";
-      final String drawableStartStr = "drawable=\"";
-      final String endStr = "\"";
-      final String commentStart = "<!--";
-      final String commentEnd = "-->";
-
-      String component = null;
-      String drawable = null;
-
-      String line;
-      boolean inComment = false;
-
-      while ((line = reader.readLine()) != null) {
-        final String trimmedLine = line.trim();
-        if (!inComment && trimmedLine.startsWith(commentStart)) {
-          inComment = true;
-        }
-        if (inComment && trimmedLine.endsWith(commentEnd)) {
-          inComment = false;
-          continue;
-        }
-
-        if (inComment) continue;
-        int start;
-        int end;
-
-        start = line.indexOf(componentStartStr);
-        if (start != -1) {
-          start += componentStartStr.length();
-          end = line.indexOf(endStr, start);
-          String ci = line.substring(start, end);
-          if (ci.startsWith("{")) ci = ci.substring(1);
-          if (ci.endsWith("}")) ci = ci.substring(0, ci.length() - 1);
-          component = ci;
-        }
-
-        start = line.indexOf(drawableStartStr);
-        if (start != -1) {
-          start += drawableStartStr.length();
-          end = line.indexOf(endStr, start);
-          drawable = line.substring(start, end);
-        }
-
-        start = line.indexOf(itemEndStr);
-        if (start != -1 && (component != null || drawable != null)) {
-          log(TAG, "Found: %s (%s)", component, drawable);
-          if (drawable == null || drawable.trim().isEmpty()) {
-            log(TAG, "WARNING: Drawable shouldn't be null.");
-            if (errorOnInvalidDrawables) {
-              if (invalidDrawables == null) {
-                invalidDrawables = new StringBuilder();
-              }
-              if (invalidDrawables.length() > 0) {
-                invalidDrawables.append("\n");
-              }
-              invalidDrawables.append(
-                  String.format("Drawable for %s was null or empty.\n", component));
-            }
-          } else {
-            final Resources r = context.getResources();
-            int identifier;
-            try {
-              identifier = r.getIdentifier(drawable, "drawable", context.getPackageName());
-            } catch (Throwable t) {
-              identifier = 0;
-            }
-            if (identifier == 0) {
-              log(
-                  TAG,
-                  "WARNING: Drawable %s (for %s) doesn't match up with a resource.",
-                  drawable,
-                  component);
-              if (errorOnInvalidDrawables) {
-                if (invalidDrawables == null) {
-                  invalidDrawables = new StringBuilder();
-                }
-                if (invalidDrawables.length() > 0) {
-                  invalidDrawables.append("\n");
-                }
-                invalidDrawables.append(
-                    String.format(
-                        "Drawable %s (for %s) doesn't match up with a resource.\n",
-                        drawable, component));
-              }
-            }
-          }
-          defined.add(component);
-        }
-      }
-
-      if (invalidDrawables != null && invalidDrawables.length() > 0) {
-        invalidDrawables.setLength(0);
-        invalidDrawables.trimToSize();
-        throw new Exception(invalidDrawables.toString());
+      AppFilterParser.parse(is, validator);
+      if (validator.invalidDrawables != null && validator.invalidDrawables.length() > 0) {
+        validator.invalidDrawables.setLength(0);
+        validator.invalidDrawables.trimToSize();
+        throw new Exception(validator.invalidDrawables.toString());
       }
       log(TAG, "Found %d total app(s) in your appfilter.", defined.size());
+      metrics.recordDuration(
+          Phase.LOAD_FILTER_PARSE,
+          metrics.since(start) - validator.nanos,
+          defined.size(),
+          is.getCount());
+      metrics.recordDuration(
+          Phase.LOAD_DRAWABLE_VALIDATION, validator.nanos, validator.validated, 0);
     } catch (final Throwable e) {
       throw new Exception("Failed to read " + filterName, e);
     } finally {
-      closeQuietly(reader);
       closeQuietly(is);
     }
 
     return defined;
   }
+
+  /** Checks each parsed item's drawable against this app's resources. */
+  private class DrawableValidator implements AppFilterParser.Handler {
+
+    private final HashSet<String> defined;
+    private final boolean errorOnInvalidDrawables;
+    private final Resources resources;
+    private final String packageName;
+    StringBuilder invalidDrawables;
+    long nanos;
+    int validated;
+
+    DrawableValidator(HashSet<String> defined, boolean errorOnInvalidDrawables) {
+      this.defined = defined;
+      this.errorOnInvalidDrawables = errorOnInvalidDrawables;
+      this.resources = context.getResources();
+      this.packageName = context.getPackageName();
+    }
+
+    @Override
+    public void onItem(String component, String drawable) {
+      log(TAG, "Found: %s (%s)", component, drawable);
+      if (drawable == null || drawable.trim().isEmpty()) {
+        warn(TAG, "Drawable for %s shouldn't be null.", component);
+        if (errorOnInvalidDrawables) {
+          appendError(String.format("Drawable for %s was null or empty.\n", component));
+        }
+      } else {
+        final long start = metrics.now();
+        int identifier;
+        try {
+          identifier = resources.getIdentifier(drawable, "drawable", packageName);
+        } catch (Throwable t) {
+          identifier = 0;
+        }
+        if (identifier == 0) {
+          warn(
+              TAG,
+              "Drawable %s (for %s) doesn't match up with a resource.",
+              drawable,
+              component);
+          if (errorOnInvalidDrawables) {
+            appendError(
+                String.format(
+                    "Drawable %s (for %s) doesn't match up with a resource.\n",
+                    drawable, component));
+          }
+        }
+        nanos += metrics.since(start);
+        validated++;
+      }
+      defined.add(component);
+    }
+
+    private void appendError(String error) {
+      if (invalidDrawables == null) {
+        invalidDrawables = new StringBuilder();
+      }
+      if (invalidDrawables.length() > 0) {
+        invalidDrawables.append("\n");
+      }
+      invalidDrawables.append(error);
+    }
+  }
 }
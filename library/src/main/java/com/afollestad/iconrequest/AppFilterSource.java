@@ -1,10 +1,10 @@
 package com.afollestad.iconrequest;
 
 import android.support.annotation.Nullable;
-import java.util.HashSet;
+import com.afollestad.iconrequest.core.ComponentFilter;
 
 interface AppFilterSource {
 
   @Nullable
-  HashSet<String> load(String filterName, boolean errorOnInvalidDrawables) throws Exception;
+  ComponentFilter load(String filterName, boolean errorOnInvalidDrawables) throws Exception;
 }
@@ -45,10 +45,15 @@ class AppIconLoader implements ModelLoader<AppModel, InputStream> {
     @Override
     public void loadData(
         @NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+      final int cookie = IRTrace.beginAsync("icon");
+      IRTrace.begin("AppIconLoader.loadData");
       try {
         callback.onDataReady(model.getIconStream(context));
       } catch (Exception e) {
         callback.onLoadFailed(e);
+      } finally {
+        IRTrace.end();
+        IRTrace.endAsync("icon", cookie);
       }
     }
 
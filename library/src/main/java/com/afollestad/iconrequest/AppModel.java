@@ -8,6 +8,7 @@ import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
 import android.os.Parcelable;
 import android.support.annotation.Nullable;
+import com.afollestad.iconrequest.core.RequestedApp;
 import com.google.auto.value.AutoValue;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -17,16 +18,19 @@ import java.io.Serializable;
 /** @author Aidan Follestad (afollestad) */
 @SuppressWarnings("WeakerAccess")
 @AutoValue
-public abstract class AppModel implements Parcelable, Serializable {
+public abstract class AppModel implements RequestedApp, Parcelable, Serializable {
 
   static AppModel create(String name, String code, String pkg) {
     return new AutoValue_AppModel(name, code, pkg, false, false);
   }
 
+  @Override
   public abstract String name();
 
+  @Override
   public abstract String code();
 
+  @Override
   public abstract String pkg();
 
   public abstract boolean requested();
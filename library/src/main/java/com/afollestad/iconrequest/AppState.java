@@ -0,0 +1,80 @@
+package com.afollestad.iconrequest;
+
+import com.afollestad.iconrequest.core.ComponentFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The loaded filter and apps of a {@link PolarRequest}, held as immutable snapshots which are
+ * swapped atomically. Readers never block and always see a filter and apps which belong together.
+ * Writers copy the current snapshot, change the copy and compare-and-set it, retrying if another
+ * write got in first, so selections made while a load finishes aren't lost.
+ */
+final class AppState {
+
+  static final class Snapshot {
+
+    static final Snapshot EMPTY =
+        new Snapshot(ComponentFilter.of(Collections.<String>emptySet()), new ArrayList<>(0));
+
+    /** Don't modify, it's shared by every reader of the snapshot. */
+    final ComponentFilter filter;
+
+    final List<AppModel> apps;
+
+    /** Takes ownership of the filter and apps, neither may be modified afterwards. */
+    Snapshot(ComponentFilter filter, ArrayList<AppModel> apps) {
+      this.filter = filter;
+      this.apps = Collections.unmodifiableList(apps);
+    }
+
+    ArrayList<AppModel> copyApps() {
+      return new ArrayList<>(apps);
+    }
+
+    Snapshot withApps(ArrayList<AppModel> apps) {
+      return new Snapshot(filter, apps);
+    }
+
+    int indexOf(AppModel app) {
+      final int index = apps.indexOf(app);
+      if (index == -1) {
+        throw new IllegalArgumentException(
+            "Unable to find app " + app.pkg() + " in this list of loaded apps!");
+      }
+      return index;
+    }
+  }
+
+  interface Mutation {
+
+    /** Returns the next snapshot, or current itself to leave the state unchanged. */
+    Snapshot apply(Snapshot current);
+  }
+
+  private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+
+  Snapshot get() {
+    return snapshot.get();
+  }
+
+  void set(Snapshot next) {
+    snapshot.set(next);
+  }
+
+  /**
+   * Applies the mutation to the current snapshot and swaps the result in. The mutation may run
+   * more than once under contention, so it must not have side effects.
+   */
+  Snapshot update(Mutation mutation) {
+    while (true) {
+      final Snapshot current = snapshot.get();
+      final Snapshot next = mutation.apply(current);
+      if (next == current || snapshot.compareAndSet(current, next)) {
+        return next;
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.afollestad.iconrequest;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Set when the subscriber of a load or send goes away. Long running stages check it between
+ * items, so abandoned work stops instead of running to completion in the background.
+ */
+final class CancellationToken {
+
+  /** A token which is never cancelled. */
+  static final CancellationToken NONE = new CancellationToken();
+
+  private volatile boolean cancelled;
+
+  void cancel() {
+    if (this != NONE) {
+      cancelled = true;
+    }
+  }
+
+  boolean isCancelled() {
+    return cancelled;
+  }
+
+  void throwIfCancelled() {
+    if (cancelled) {
+      throw new CancellationException("Cancelled");
+    }
+  }
+}
@@ -1,91 +1,159 @@
 package com.afollestad.iconrequest;
 
 import static com.afollestad.iconrequest.IRLog.log;
+import static com.afollestad.iconrequest.core.ComponentJoin.code;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.support.annotation.NonNull;
+import com.afollestad.iconrequest.PhaseMetric.Phase;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /** @author Aidan Follestad (afollestad) */
 class ComponentInfoPm implements ComponentInfoSource {
 
   private static final String TAG = ComponentInfoPm.class.getSimpleName();
+  private static final Comparator<AppModel> NAME_COMPARATOR =
+      (left, right) -> left.name().compareTo(right.name());
   private final Context context;
+  private final Metrics metrics;
 
-  ComponentInfoPm(@NonNull Context context) {
+  ComponentInfoPm(@NonNull Context context, @NonNull Metrics metrics) {
     this.context = context;
+    this.metrics = metrics;
   }
 
   @Override
-  public ArrayList<AppModel> getInstalledApps(HashSet<String> filter) {
-    final PackageManager pm = context.getPackageManager();
-    final List<ApplicationInfo> appInfos =
-        pm.getInstalledApplications(PackageManager.GET_META_DATA);
-
+  public ArrayList<AppModel> getInstalledApps(
+      Set<String> filter, CancellationToken token) {
+    IRTrace.begin("ComponentInfoPm.getInstalledApps");
     try {
-      Collections.sort(appInfos, new NameComparator(pm));
-    } catch (Throwable t) {
-      t.printStackTrace();
-    }
-
-    final ArrayList<AppModel> apps = new ArrayList<>(appInfos.size());
-    int filtered = 0;
-
-    for (ApplicationInfo ai : appInfos) {
-      final Intent launchIntent = pm.getLaunchIntentForPackage(ai.packageName);
-      if (launchIntent == null) {
-        continue;
+      final Scan scan = new PmScan(filter, token);
+      while (scan.hasNext()) {
+        scan.next(Integer.MAX_VALUE);
       }
+      return scan.finish();
+    } finally {
+      IRTrace.end();
+    }
+  }
 
-      String launchStr = launchIntent.toString();
-      launchStr = launchStr.substring(launchStr.indexOf("cmp=") + "cmp=".length());
-      launchStr = launchStr.substring(0, launchStr.length() - 2);
-
-      final String[] splitCode = launchStr.split("/");
-      if (splitCode[1].startsWith(".")) {
-        launchStr = splitCode[0] + "/" + splitCode[0] + splitCode[1];
-      }
+  @Override
+  public Scan scan(Set<String> filter) {
+    return new PmScan(filter, CancellationToken.NONE);
+  }
 
-      if (filter.contains(launchStr)) {
-        filtered++;
-        log(TAG, "Filtered %s", launchStr);
-        continue;
+  /**
+   * Labels are loaded once per resolved app and the result is sorted by them at the end, instead
+   * of sorting every package up front with a comparator which loads labels on each comparison.
+   */
+  private class PmScan implements Scan {
+
+    private final PackageManager pm;
+    private final Set<String> filter;
+    private final CancellationToken token;
+    private final List<ApplicationInfo> appInfos;
+    private final ArrayList<AppModel> apps;
+    private int position;
+    private int filtered;
+    private long queryNanos;
+    private long labelNanos;
+
+    PmScan(Set<String> filter, CancellationToken token) {
+      this.pm = context.getPackageManager();
+      this.filter = filter;
+      this.token = token;
+      final long start = metrics.now();
+      IRTrace.begin("pm:getInstalledApplications");
+      try {
+        appInfos = pm.getInstalledApplications(PackageManager.GET_META_DATA);
+      } finally {
+        IRTrace.end();
       }
-
-      final String name = ai.loadLabel(pm).toString();
-      apps.add(AppModel.create(name, launchStr, ai.packageName));
+      queryNanos = metrics.since(start);
+      apps = new ArrayList<>(appInfos.size());
     }
 
-    log(TAG, "Loaded %d total app(s), filtered out %d app(s).", apps.size(), filtered);
-    return apps;
-  }
-
-  private static class NameComparator implements Comparator<ApplicationInfo> {
+    @Override
+    public int total() {
+      return appInfos.size();
+    }
 
-    private PackageManager packageManager;
+    @Override
+    public int scanned() {
+      return position;
+    }
 
-    NameComparator(PackageManager pm) {
-      packageManager = pm;
+    @Override
+    public boolean hasNext() {
+      return position < appInfos.size();
     }
 
     @Override
-    public int compare(ApplicationInfo aa, ApplicationInfo ab) {
-      CharSequence sa = packageManager.getApplicationLabel(aa);
-      if (sa == null) {
-        sa = aa.packageName;
+    public List<AppModel> next(int maxApps) {
+      final int first = apps.size();
+      final long start = metrics.now();
+      long pageLabelNanos = 0;
+      IRTrace.begin("pm:resolve");
+      try {
+        while (position < appInfos.size() && apps.size() - first < maxApps) {
+          token.throwIfCancelled();
+          final ApplicationInfo ai = appInfos.get(position++);
+          final Intent launchIntent = pm.getLaunchIntentForPackage(ai.packageName);
+          if (launchIntent == null) {
+            continue;
+          }
+
+          final ComponentName component = launchIntent.getComponent();
+          if (component == null) {
+            continue;
+          }
+          final String launchStr = code(component.getPackageName(), component.getClassName());
+
+          if (filter.contains(launchStr)) {
+            filtered++;
+            log(TAG, "Filtered %s", launchStr);
+            continue;
+          }
+
+          final long labelStart = metrics.now();
+          final String name = ai.loadLabel(pm).toString();
+          pageLabelNanos += metrics.since(labelStart);
+          apps.add(AppModel.create(name, launchStr, ai.packageName));
+        }
+      } finally {
+        IRTrace.end();
       }
-      CharSequence sb = packageManager.getApplicationLabel(ab);
-      if (sb == null) {
-        sb = ab.packageName;
+      labelNanos += pageLabelNanos;
+      queryNanos += metrics.since(start) - pageLabelNanos;
+      return Collections.unmodifiableList(new ArrayList<>(apps.subList(first, apps.size())));
+    }
+
+    @Override
+    public ArrayList<AppModel> finish() {
+      metrics.recordDuration(Phase.LOAD_PM_QUERY, queryNanos, position, 0);
+      metrics.recordDuration(Phase.LOAD_LABELS, labelNanos, apps.size(), 0);
+
+      final long start = metrics.now();
+      IRTrace.begin("pm:sort");
+      try {
+        Collections.sort(apps, NAME_COMPARATOR);
+      } catch (Throwable t) {
+        t.printStackTrace();
+      } finally {
+        IRTrace.end();
       }
-      return sa.toString().compareTo(sb.toString());
+      metrics.record(Phase.LOAD_SORT, start, apps.size(), 0);
+
+      log(TAG, "Loaded %d total app(s), filtered out %d app(s).", apps.size(), filtered);
+      return apps;
     }
   }
 }
@@ -1,9 +1,32 @@
 package com.afollestad.iconrequest;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 interface ComponentInfoSource {
 
-  ArrayList<AppModel> getInstalledApps(HashSet<String> filter);
+  /** Resolves every unthemed app, stopping with a CancellationException once token is. */
+  ArrayList<AppModel> getInstalledApps(Set<String> filter, CancellationToken token);
+
+  /** Starts resolving installed apps incrementally, for progressive loading. */
+  Scan scan(Set<String> filter);
+
+  /** Resolves installed apps a few at a time, in no particular order. */
+  interface Scan {
+
+    /** The number of packages to go through. */
+    int total();
+
+    /** The number of packages gone through so far. */
+    int scanned();
+
+    boolean hasNext();
+
+    /** Resolves packages until up to maxApps unthemed apps were found, or none are left. */
+    List<AppModel> next(int maxApps);
+
+    /** Every app the scan found, sorted by name. */
+    ArrayList<AppModel> finish();
+  }
 }
@@ -0,0 +1,48 @@
+package com.afollestad.iconrequest;
+
+import android.support.annotation.Nullable;
+import com.google.auto.value.AutoValue;
+
+/** The state of the remote request outbox, emitted by {@link PolarRequest#delivery()}. */
+@SuppressWarnings("WeakerAccess")
+@AutoValue
+public abstract class DeliveryState {
+
+  public enum Status {
+    /** A request was stored in the outbox. */
+    QUEUED,
+    /** Pending requests are being uploaded. */
+    SENDING,
+    /** Every pending request was delivered, the outbox is empty. */
+    DELIVERED,
+    /**
+     * Delivery failed because of the network or a {@link RetryableException}, it's retried after
+     * {@link #retryDelayMillis()}.
+     */
+    RETRY_SCHEDULED,
+    /** The server rejected a pending request, it was dropped. Others were still sent. */
+    FAILED
+  }
+
+  static DeliveryState create(Status status, int pending) {
+    return new AutoValue_DeliveryState(status, pending, 0, null);
+  }
+
+  static DeliveryState retry(int pending, long delayMillis, Exception error) {
+    return new AutoValue_DeliveryState(Status.RETRY_SCHEDULED, pending, delayMillis, error);
+  }
+
+  static DeliveryState failed(int pending, Exception error) {
+    return new AutoValue_DeliveryState(Status.FAILED, pending, 0, error);
+  }
+
+  public abstract Status status();
+
+  /** The number of requests waiting in the outbox. */
+  public abstract int pending();
+
+  public abstract long retryDelayMillis();
+
+  @Nullable
+  public abstract Exception error();
+}
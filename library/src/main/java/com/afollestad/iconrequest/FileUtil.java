@@ -1,14 +1,25 @@
 package com.afollestad.iconrequest;
 
+import android.content.Context;
 import android.graphics.Bitmap;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 
 /** @author Aidan Follestad (afollestad) */
 class FileUtil {
 
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
   @SuppressWarnings("ResultOfMethodCallIgnored")
   static int wipe(File dir) {
     if (!dir.exists()) return 0;
@@ -23,14 +34,52 @@ class FileUtil {
     return count;
   }
 
-  static void writeIcon(File file, Bitmap icon) throws Exception {
-    FileOutputStream os = null;
+  static void writeIcon(File file, Bitmap icon, PolarConfig config) throws Exception {
+    OutputStream os = null;
     try {
-      os = new FileOutputStream(file);
-      icon.compress(Bitmap.CompressFormat.PNG, 100, os);
+      os = new BufferedOutputStream(new FileOutputStream(file));
+      IconExport.write(os, icon, config);
+      os.flush();
+    } finally {
+      FileUtil.closeQuietly(os);
+    }
+  }
+
+  /** Writes the icon like {@link #writeIcon}, returning the SHA-1 of the encoded file. */
+  static String writeIconHashed(File file, Bitmap icon, PolarConfig config) throws Exception {
+    final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+    OutputStream os = null;
+    try {
+      os = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(file)), digest);
+      IconExport.write(os, icon, config);
+      os.flush();
     } finally {
       FileUtil.closeQuietly(os);
     }
+    return hex(digest.digest());
+  }
+
+  static String hex(byte[] bytes) {
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+      chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+
+  /** The configured cache folder, or the default one, which needs disk access to look up. */
+  static File cacheFolder(Context context, PolarConfig config) {
+    if (config.cacheFolder() != null) {
+      return new File(config.cacheFolder());
+    }
+    final File external = context.getExternalCacheDir();
+    return new File(external != null ? external : context.getCacheDir(), "com.afollestad.polar");
+  }
+
+  /** Where state which has to outlive the cache folder, like the icon ledger, is kept. */
+  static File dataFolder(Context context) {
+    return new File(context.getFilesDir(), "com.afollestad.polar");
   }
 
   static void writeAll(File file, String content) throws Exception {
@@ -48,10 +97,60 @@ class FileUtil {
     }
   }
 
+  static String readAll(File file) throws Exception {
+    InputStream is = null;
+    try {
+      is = new FileInputStream(file);
+      ByteArrayOutputStream os = new ByteArrayOutputStream((int) file.length());
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        os.write(buffer, 0, read);
+      }
+      return os.toString("UTF-8");
+    } finally {
+      closeQuietly(is);
+    }
+  }
+
   static void closeQuietly(Closeable c) {
     try {
       c.close();
     } catch (Throwable ignored) {
     }
   }
+
+  static class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = super.read();
+      if (read != -1) count++;
+      return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read != -1) count += read;
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
 }
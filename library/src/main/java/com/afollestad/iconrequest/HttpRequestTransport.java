@@ -0,0 +1,254 @@
+package com.afollestad.iconrequest;
+
+import static com.afollestad.iconrequest.FileUtil.closeQuietly;
+import static com.afollestad.iconrequest.IRUtils.isEmpty;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * {@link RequestTransport} on top of HttpURLConnection. It is configured once per host and key,
+ * streams the archive instead of buffering it, and always drains responses so the platform can
+ * keep the connection alive for the next request.
+ *
+ * <p>Servers which don't know the icon handshake answer it with a 404, every icon is uploaded then.
+ * Server errors, timeouts and rate limiting are thrown as {@link RetryableException}s.
+ */
+class HttpRequestTransport implements IconHashTransport {
+
+  static final String DEFAULT_HOST = "https://polar.aidanfollestad.com";
+  private static final String BOUNDARY = "----IconRequestBoundary7MA4YWxkTrZu0gW";
+  private static final String CRLF = "\r\n";
+  private static final int TIMEOUT_MS = 30_000;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private final String host;
+  private final String apiKey;
+
+  HttpRequestTransport(@Nullable String host, @NonNull String apiKey) {
+    this.host = normalizeHost(host);
+    this.apiKey = apiKey;
+  }
+
+  private static String normalizeHost(@Nullable String host) {
+    String resolved = isEmpty(host) ? DEFAULT_HOST : host.trim();
+    if (resolved.endsWith("/")) {
+      resolved = resolved.substring(0, resolved.length() - 1);
+    }
+    return resolved;
+  }
+
+  /** Whether this transport was configured for the given host and key, so it can be reused. */
+  boolean matches(@Nullable String host, @Nullable String apiKey) {
+    return this.host.equals(normalizeHost(host)) && this.apiKey.equals(apiKey);
+  }
+
+  @Override
+  public void send(@NonNull File archive, @NonNull String appsJson, @Nullable UploadChunk chunk)
+      throws Exception {
+    final String chunkFields =
+        chunk == null
+            ? ""
+            : field("requestId", chunk.requestId())
+                + field("chunkIndex", Integer.toString(chunk.index()))
+                + field("chunkCount", Integer.toString(chunk.count()));
+    final byte[] head =
+        (chunkFields
+                + "--"
+                + BOUNDARY
+                + CRLF
+                + "Content-Disposition: form-data; name=\"archive\"; filename=\""
+                + archive.getName()
+                + "\""
+                + CRLF
+                + "Content-Type: application/zip"
+                + CRLF
+                + CRLF)
+            .getBytes("UTF-8");
+    final byte[] tail =
+        (CRLF
+                + "--"
+                + BOUNDARY
+                + CRLF
+                + "Content-Disposition: form-data; name=\"apps\""
+                + CRLF
+                + "Content-Type: application/json; charset=utf-8"
+                + CRLF
+                + CRLF
+                + appsJson
+                + CRLF
+                + "--"
+                + BOUNDARY
+                + "--"
+                + CRLF)
+            .getBytes("UTF-8");
+    final long length = head.length + archive.length() + tail.length;
+
+    final HttpURLConnection conn =
+        (HttpURLConnection) new URL(host + "/v1/request").openConnection();
+    conn.setConnectTimeout(TIMEOUT_MS);
+    conn.setReadTimeout(TIMEOUT_MS);
+    conn.setRequestMethod("POST");
+    conn.setDoOutput(true);
+    conn.setRequestProperty("TokenID", apiKey);
+    conn.setRequestProperty("Accept", "application/json");
+    conn.setRequestProperty("User-Agent", "afollestad/icon-request");
+    conn.setRequestProperty("Connection", "keep-alive");
+    conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+    if (chunk != null) {
+      conn.setRequestProperty("X-Request-Id", chunk.requestId());
+      conn.setRequestProperty("X-Request-Chunk", (chunk.index() + 1) + "/" + chunk.count());
+    }
+    if (length <= Integer.MAX_VALUE) {
+      conn.setFixedLengthStreamingMode((int) length);
+    } else {
+      conn.setChunkedStreamingMode(0);
+    }
+
+    OutputStream os = null;
+    InputStream is = null;
+    try {
+      os = conn.getOutputStream();
+      os.write(head);
+      is = new FileInputStream(archive);
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1) os.write(buffer, 0, read);
+      os.write(tail);
+      os.flush();
+    } finally {
+      closeQuietly(is);
+      closeQuietly(os);
+    }
+
+    final int code = conn.getResponseCode();
+    final String body = readBody(code < 400 ? conn.getInputStream() : conn.getErrorStream());
+    validate(code, body);
+  }
+
+  @NonNull
+  @Override
+  public Set<String> missingIcons(@NonNull Set<String> iconHashes) throws Exception {
+    if (iconHashes.isEmpty()) {
+      return iconHashes;
+    }
+    final JSONArray hashes = new JSONArray();
+    for (String hash : iconHashes) {
+      hashes.put(hash);
+    }
+    final byte[] body = new JSONObject().put("hashes", hashes).toString().getBytes("UTF-8");
+
+    final HttpURLConnection conn =
+        (HttpURLConnection) new URL(host + "/v1/icons/missing").openConnection();
+    conn.setConnectTimeout(TIMEOUT_MS);
+    conn.setReadTimeout(TIMEOUT_MS);
+    conn.setRequestMethod("POST");
+    conn.setDoOutput(true);
+    conn.setRequestProperty("TokenID", apiKey);
+    conn.setRequestProperty("Accept", "application/json");
+    conn.setRequestProperty("User-Agent", "afollestad/icon-request");
+    conn.setRequestProperty("Connection", "keep-alive");
+    conn.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+    conn.setFixedLengthStreamingMode(body.length);
+
+    OutputStream os = null;
+    try {
+      os = conn.getOutputStream();
+      os.write(body);
+      os.flush();
+    } finally {
+      closeQuietly(os);
+    }
+
+    final int code = conn.getResponseCode();
+    final String response = readBody(code < 400 ? conn.getInputStream() : conn.getErrorStream());
+    if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+      return iconHashes;
+    }
+    // The answer only lists the missing hashes, it has no status to check
+    if (code >= HttpURLConnection.HTTP_MULT_CHOICE) {
+      validate(code, response);
+    }
+    final JSONArray missing =
+        response != null ? new JSONObject(response).optJSONArray("missing") : null;
+    if (missing == null) {
+      return iconHashes;
+    }
+    final HashSet<String> result = new HashSet<>(missing.length());
+    for (int i = 0; i < missing.length(); i++) {
+      result.add(missing.getString(i));
+    }
+    return result;
+  }
+
+  private static String field(String name, String value) {
+    return "--"
+        + BOUNDARY
+        + CRLF
+        + "Content-Disposition: form-data; name=\""
+        + name
+        + "\""
+        + CRLF
+        + CRLF
+        + value
+        + CRLF;
+  }
+
+  /** Reads the whole body in one pass, which also lets the connection be reused. */
+  @Nullable
+  static String readBody(@Nullable InputStream is) throws Exception {
+    if (is == null) {
+      return null;
+    }
+    try {
+      final ByteArrayOutputStream os = new ByteArrayOutputStream(256);
+      final byte[] buffer = new byte[1024];
+      int read;
+      while ((read = is.read(buffer)) != -1) os.write(buffer, 0, read);
+      return os.toString("UTF-8");
+    } finally {
+      closeQuietly(is);
+    }
+  }
+
+  static void validate(int code, @Nullable String body) throws Exception {
+    final boolean success = code >= 200 && code < 300;
+    JSONObject json = null;
+    if (body != null && body.trim().startsWith("{")) {
+      try {
+        json = new JSONObject(body);
+      } catch (JSONException e) {
+        // Error pages of proxies and overloaded servers aren't always valid JSON
+        if (success) {
+          throw e;
+        }
+      }
+    }
+    if (!success) {
+      final String error = json != null ? json.optString("error", null) : null;
+      final String message =
+          "The request manager responded with HTTP " + code + (error != null ? ": " + error : "");
+      if (code >= HttpURLConnection.HTTP_INTERNAL_ERROR
+          || code == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+          || code == HTTP_TOO_MANY_REQUESTS) {
+        throw new RetryableException(message);
+      }
+      throw new Exception(message);
+    }
+    if (json != null && !"success".equals(json.optString("status"))) {
+      throw new Exception(json.optString("error", "Unknown error"));
+    }
+  }
+}
@@ -3,13 +3,71 @@ package com.afollestad.iconrequest;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
+import com.afollestad.iconrequest.core.Logging;
 
-/** @author Aidan Follestad (afollestad) */
-class IRLog {
+/**
+ * Level-gated logging for the library, backed by {@link Logging} with a logcat sink. Messages
+ * below {@link #setLevel(int)} are dropped before their arguments are formatted.
+ *
+ * @author Aidan Follestad (afollestad)
+ */
+@SuppressWarnings("WeakerAccess")
+public final class IRLog {
+
+  /** Disables all logging. */
+  public static final int NONE = Logging.NONE;
+
+  private static final Sink LOGCAT = Log::println;
+
+  static {
+    Logging.setSink(LOGCAT);
+  }
+
+  private IRLog() {}
+
+  /** Receives messages which passed the level check, already formatted. */
+  public interface Sink extends Logging.Sink {}
+
+  /** Sets the lowest priority that is logged, e.g. {@link Log#DEBUG}, or {@link #NONE}. */
+  public static void setLevel(int level) {
+    Logging.setLevel(level);
+  }
+
+  public static int getLevel() {
+    return Logging.getLevel();
+  }
+
+  /** Replaces the logcat sink, pass null to restore it. */
+  public static void setSink(@Nullable Sink sink) {
+    Logging.setSink(sink != null ? sink : LOGCAT);
+  }
+
+  public static boolean isLoggable(int priority) {
+    return Logging.isLoggable(priority);
+  }
+
+  static void log(@Nullable String tag, @NonNull String msg) {
+    Logging.log(Log.DEBUG, tag, msg);
+  }
+
+  static void log(@Nullable String tag, @NonNull String msg, @Nullable Object arg1) {
+    Logging.log(Log.DEBUG, tag, msg, arg1);
+  }
+
+  static void log(
+      @Nullable String tag, @NonNull String msg, @Nullable Object arg1, @Nullable Object arg2) {
+    Logging.log(Log.DEBUG, tag, msg, arg1, arg2);
+  }
 
   static void log(@Nullable String tag, @NonNull String msg, @Nullable Object... args) {
-    if (tag == null) tag = "IconRequest";
-    if (args != null) msg = String.format(msg, args);
-    Log.d(tag, msg);
+    Logging.log(Log.DEBUG, tag, msg, args);
+  }
+
+  static void warn(@Nullable String tag, @NonNull String msg) {
+    Logging.log(Log.WARN, tag, msg);
+  }
+
+  static void warn(@Nullable String tag, @NonNull String msg, @Nullable Object... args) {
+    Logging.log(Log.WARN, tag, msg, args);
   }
 }
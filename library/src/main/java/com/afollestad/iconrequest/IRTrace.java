@@ -0,0 +1,74 @@
+package com.afollestad.iconrequest;
+
+import android.os.Build;
+import android.os.Trace;
+import android.support.annotation.NonNull;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Systrace/Perfetto markers for the load and send pipelines, enabled through {@link
+ * PolarConfig#traceEnabled()}. Section names are prefixed with "IR:" so they're easy to find.
+ */
+final class IRTrace {
+
+  private static final String PREFIX = "IR:";
+  private static final AtomicInteger cookies = new AtomicInteger();
+
+  private static volatile boolean enabled;
+  private static Method beginAsyncSection;
+  private static Method endAsyncSection;
+
+  private IRTrace() {}
+
+  static void setEnabled(boolean enabled) {
+    IRTrace.enabled = enabled;
+  }
+
+  private static boolean active() {
+    return enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+  }
+
+  /** Begins a section on the current thread, must be balanced by {@link #end()} on that thread. */
+  static void begin(@NonNull String name) {
+    if (active()) {
+      Trace.beginSection(PREFIX + name);
+    }
+  }
+
+  static void end() {
+    if (active()) {
+      Trace.endSection();
+    }
+  }
+
+  /**
+   * Begins a section which may end on another thread. Async sections need API 29, below that
+   * this only hands out the cookie.
+   */
+  static int beginAsync(@NonNull String name) {
+    final int cookie = cookies.incrementAndGet();
+    if (active() && Build.VERSION.SDK_INT >= 29) {
+      invoke(true, name, cookie);
+    }
+    return cookie;
+  }
+
+  static void endAsync(@NonNull String name, int cookie) {
+    if (active() && Build.VERSION.SDK_INT >= 29) {
+      invoke(false, name, cookie);
+    }
+  }
+
+  // The async methods are newer than the compile SDK, so they're looked up once reflectively.
+  private static void invoke(boolean begin, String name, int cookie) {
+    try {
+      if (beginAsyncSection == null) {
+        beginAsyncSection = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+        endAsyncSection = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+      }
+      (begin ? beginAsyncSection : endAsyncSection).invoke(null, PREFIX + name, cookie);
+    } catch (Exception ignored) {
+    }
+  }
+}
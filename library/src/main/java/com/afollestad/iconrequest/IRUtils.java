@@ -2,7 +2,6 @@ package com.afollestad.iconrequest;
 
 import android.os.Build;
 import android.support.annotation.Nullable;
-import java.util.Locale;
 
 /** @author Aidan Follestad (afollestad) */
 class IRUtils {
@@ -11,10 +10,6 @@ class IRUtils {
     return str == null || str.trim().isEmpty();
   }
 
-  static String drawableName(String appName) {
-    return appName.toLowerCase(Locale.getDefault()).replace(" ", "_");
-  }
-
   static String getOSVersionName(int sdkInt) {
     switch (sdkInt) {
       default:
@@ -0,0 +1,81 @@
+package com.afollestad.iconrequest;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import com.afollestad.iconrequest.PolarConfig.IconFormat;
+import com.afollestad.iconrequest.core.IconQuantizer;
+import com.afollestad.iconrequest.core.IconScaler;
+import com.afollestad.iconrequest.core.IndexedPngWriter;
+import java.io.OutputStream;
+
+/**
+ * Encodes icons for request archives as configured by {@link PolarConfig#iconMaxSize()}, {@link
+ * PolarConfig#iconFormat()} and {@link PolarConfig#iconPaletteSize()}. The defaults write the
+ * bitmap as-is to a PNG, like before these options existed.
+ */
+final class IconExport {
+
+  private IconExport() {}
+
+  static String extension(PolarConfig config) {
+    return webp(config) ? "webp" : "png";
+  }
+
+  // Below API 29, WEBP at quality 100 is lossy, so icons stay PNG there.
+  private static boolean webp(PolarConfig config) {
+    return config.iconFormat() == IconFormat.WEBP && Build.VERSION.SDK_INT >= 29;
+  }
+
+  /** Identifies the options, so icons exported with different ones aren't mistaken as equal. */
+  static String signature(PolarConfig config) {
+    return extension(config) + "/" + config.iconMaxSize() + "/" + config.iconPaletteSize();
+  }
+
+  static void write(OutputStream os, Bitmap icon, PolarConfig config) throws Exception {
+    final int maxSize = config.iconMaxSize();
+    final int paletteSize = config.iconPaletteSize();
+    if ((maxSize <= 0 || Math.max(icon.getWidth(), icon.getHeight()) <= maxSize)
+        && paletteSize <= 0) {
+      icon.compress(compressFormat(config), 100, os);
+      return;
+    }
+
+    final int width = icon.getWidth();
+    final int height = icon.getHeight();
+    int[] pixels = new int[width * height];
+    icon.getPixels(pixels, 0, width, 0, 0, width, height);
+    final int[] size = IconScaler.fit(width, height, maxSize);
+    pixels = IconScaler.scale(pixels, width, height, size[0], size[1]);
+
+    if (paletteSize > 0) {
+      final IconQuantizer.Result quantized =
+          IconQuantizer.quantize(pixels, Math.max(2, Math.min(256, paletteSize)));
+      if (!webp(config)) {
+        IndexedPngWriter.write(os, size[0], size[1], quantized.palette, quantized.indices);
+        return;
+      }
+      for (int i = 0; i < pixels.length; i++) {
+        pixels[i] = quantized.palette[quantized.indices[i] & 0xff];
+      }
+    }
+
+    final Bitmap scaled =
+        Bitmap.createBitmap(pixels, size[0], size[1], Bitmap.Config.ARGB_8888);
+    try {
+      scaled.compress(compressFormat(config), 100, os);
+    } finally {
+      scaled.recycle();
+    }
+  }
+
+  // WEBP_LOSSLESS is newer than the compile SDK. On API 29, WEBP at quality 100 is lossless.
+  private static Bitmap.CompressFormat compressFormat(PolarConfig config) {
+    if (!webp(config)) {
+      return Bitmap.CompressFormat.PNG;
+    }
+    if (Build.VERSION.SDK_INT >= 30) {
+      return Bitmap.CompressFormat.valueOf("WEBP_LOSSLESS");
+    }
+    return Bitmap.CompressFormat.WEBP;
+  }
+}
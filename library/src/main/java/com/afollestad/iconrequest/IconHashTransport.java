@@ -0,0 +1,15 @@
+package com.afollestad.iconrequest;
+
+import android.support.annotation.NonNull;
+import java.util.Set;
+
+/**
+ * A {@link RequestTransport} which can ask the request manager which icons it already has. Icons
+ * the server knows are left out of the archive and referenced by their hash in the apps JSON.
+ */
+public interface IconHashTransport extends RequestTransport {
+
+  /** Returns the SHA-1 hashes, out of the given ones, of icons the server doesn't have yet. */
+  @NonNull
+  Set<String> missingIcons(@NonNull Set<String> iconHashes) throws Exception;
+}
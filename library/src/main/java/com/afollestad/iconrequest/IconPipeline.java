@@ -0,0 +1,208 @@
+package com.afollestad.iconrequest;
+
+import static com.afollestad.iconrequest.IRLog.log;
+import static com.afollestad.iconrequest.IRLog.warn;
+
+import android.content.Context;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+import com.afollestad.iconrequest.core.RequestArchive;
+import io.reactivex.Scheduler;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Streams icons into a request archive. Icons are loaded on the load scheduler, since that waits on
+ * the package manager and disk, then encoded on the encode scheduler, while the calling thread
+ * writes finished ones into the archive in selection order. At most {@link #WINDOW} icons are in
+ * flight, so a slow archive holds the loaders and encoders back instead of piling up encoded icons
+ * in memory.
+ */
+final class IconPipeline {
+
+  private static final String TAG = IconPipeline.class.getSimpleName();
+  static final int WINDOW = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  private final Context context;
+  private final PolarConfig config;
+  private final Scheduler loader;
+  private final Scheduler encoder;
+  private final CancellationToken token;
+  private final SendProgressReporter progress;
+  private final Metrics metrics;
+
+  private long renderNanos;
+  private long encodeNanos;
+  private long encodedBytes;
+
+  IconPipeline(
+      Context context,
+      PolarConfig config,
+      Scheduler loader,
+      Scheduler encoder,
+      CancellationToken token,
+      SendProgressReporter progress,
+      Metrics metrics) {
+    this.context = context;
+    this.config = config;
+    this.loader = loader;
+    this.encoder = encoder;
+    this.token = token;
+    this.progress = progress;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Writes an entry for each app's icon, hashing them into iconHashes unless it's null. Returns the
+   * number of icons written, apps without a bitmap icon are skipped.
+   */
+  int run(List<AppModel> apps, RequestArchive archive, @Nullable Map<String, String> iconHashes)
+      throws Exception {
+    log(TAG, "Saving icons...");
+    final String extension = IconExport.extension(config);
+    final boolean hashed = iconHashes != null;
+    final ArrayDeque<Icon> inFlight = new ArrayDeque<>(WINDOW);
+    int next = 0;
+    int written = 0;
+    try {
+      while (next < apps.size() || !inFlight.isEmpty()) {
+        while (next < apps.size() && inFlight.size() < WINDOW) {
+          token.throwIfCancelled();
+          final Icon icon = new Icon(apps.get(next++), hashed);
+          inFlight.add(icon);
+          loader.scheduleDirect(icon::load);
+        }
+        final Encoded encoded = await(inFlight.poll().encoded);
+        token.throwIfCancelled();
+        renderNanos += encoded.renderNanos;
+        encodeNanos += encoded.encodeNanos;
+        if (encoded.bytes == null) {
+          warn(TAG, "Icon for %s didn't return a BitmapDrawable.", encoded.app.code());
+          progress.iconDone(0);
+          continue;
+        }
+        final String name = encoded.app.pkg() + "." + extension;
+        archive.putBytes(name, encoded.bytes);
+        if (iconHashes != null) {
+          iconHashes.put(encoded.app.code(), encoded.hash);
+        }
+        encodedBytes += encoded.bytes.length;
+        written++;
+        progress.iconDone(encoded.bytes.length);
+        log(TAG, "Saved icon: %s", name);
+      }
+    } finally {
+      for (Icon icon : inFlight) {
+        icon.encoded.cancel(false);
+      }
+    }
+    return written;
+  }
+
+  /** Time spent loading icons, summed over the loader threads. */
+  long renderNanos() {
+    return renderNanos;
+  }
+
+  /** Time spent encoding icons, summed over the encoder threads. */
+  long encodeNanos() {
+    return encodeNanos;
+  }
+
+  long encodedBytes() {
+    return encodedBytes;
+  }
+
+  /**
+   * One icon on its way into the archive. It's loaded on the load scheduler, which hands it to the
+   * encode scheduler, so the encoders only do pixel work. A failed load is rethrown by the encode
+   * step, where {@link #await} picks it up.
+   */
+  private final class Icon {
+
+    final AppModel app;
+    final boolean hashed;
+    final FutureTask<Encoded> encoded = new FutureTask<>(this::encode);
+    @Nullable private Drawable drawable;
+    @Nullable private Exception error;
+    private long renderNanos;
+
+    Icon(AppModel app, boolean hashed) {
+      this.app = app;
+      this.hashed = hashed;
+    }
+
+    void load() {
+      if (encoded.isCancelled()) {
+        return;
+      }
+      try {
+        token.throwIfCancelled();
+        final long renderStart = metrics.now();
+        drawable = app.getIcon(context);
+        renderNanos = metrics.since(renderStart);
+      } catch (Exception e) {
+        error = e;
+      }
+      encoder.scheduleDirect(encoded);
+    }
+
+    private Encoded encode() throws Exception {
+      if (error != null) {
+        throw error;
+      }
+      token.throwIfCancelled();
+      if (!(drawable instanceof BitmapDrawable)) {
+        return new Encoded(app, null, null, renderNanos, 0);
+      }
+      final long encodeStart = metrics.now();
+      final ByteArrayOutputStream os = new ByteArrayOutputStream(16 * 1024);
+      IconExport.write(os, ((BitmapDrawable) drawable).getBitmap(), config);
+      final byte[] bytes = os.toByteArray();
+      final String hash =
+          hashed ? FileUtil.hex(MessageDigest.getInstance("SHA-1").digest(bytes)) : null;
+      return new Encoded(app, bytes, hash, renderNanos, metrics.since(encodeStart));
+    }
+  }
+
+  private static Encoded await(FutureTask<Encoded> task) throws Exception {
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof CancellationException) {
+        throw (CancellationException) cause;
+      }
+      throw new Exception("Failed to save an icon: " + cause.getMessage(), cause);
+    }
+  }
+
+  private static class Encoded {
+
+    final AppModel app;
+    @Nullable final byte[] bytes;
+    @Nullable final String hash;
+    final long renderNanos;
+    final long encodeNanos;
+
+    Encoded(
+        AppModel app,
+        @Nullable byte[] bytes,
+        @Nullable String hash,
+        long renderNanos,
+        long encodeNanos) {
+      this.app = app;
+      this.bytes = bytes;
+      this.hash = hash;
+      this.renderNanos = renderNanos;
+      this.encodeNanos = encodeNanos;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.afollestad.iconrequest;
+
+import static com.afollestad.iconrequest.FileUtil.closeQuietly;
+import static com.afollestad.iconrequest.IRLog.warn;
+
+import android.content.Context;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A small persistent map in the {@link FileUtil#dataFolder data folder}, loaded lazily. Entries are
+ * appended to a text file as tab separated lines, later lines win, and the file is rewritten once
+ * most of it is stale. The folder is only looked up on first use, since that's disk I/O and
+ * ledgers are created on the main thread.
+ */
+class Ledger {
+
+  private static final String TAG = Ledger.class.getSimpleName();
+
+  private final Context context;
+  private final String name;
+  private File file;
+  private HashMap<String, String> entries;
+  private int lines;
+
+  Ledger(Context context, String name) {
+    this.context = context;
+    this.name = name;
+  }
+
+  synchronized String get(String key) {
+    return load().get(key);
+  }
+
+  /** A copy of every entry. */
+  synchronized Map<String, String> entries() {
+    return new HashMap<>(load());
+  }
+
+  synchronized void put(String key, String value) {
+    putAll(Collections.singletonMap(key, value));
+  }
+
+  /** Drops the entries, rewriting the file if any of them existed. */
+  synchronized void removeAll(Collection<String> keys) {
+    final HashMap<String, String> entries = load();
+    boolean removed = false;
+    for (String key : keys) {
+      removed |= entries.remove(key) != null;
+    }
+    if (removed) {
+      compact();
+    }
+  }
+
+  /** Appends the entries which changed in a single write. */
+  synchronized void putAll(Map<String, String> values) {
+    final HashMap<String, String> entries = load();
+    final StringBuilder append = new StringBuilder();
+    int appended = 0;
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      if (!entry.getValue().equals(entries.put(entry.getKey(), entry.getValue()))) {
+        append.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+        appended++;
+      }
+    }
+    if (appended == 0) {
+      return;
+    }
+    if (lines + appended > 64 && lines + appended > entries.size() * 2) {
+      compact();
+      return;
+    }
+    Writer writer = null;
+    try {
+      writer = append();
+      writer.write(append.toString());
+      lines += appended;
+    } catch (Exception e) {
+      warn(TAG, "Unable to update %s: %s", file.getName(), e);
+    } finally {
+      closeQuietly(writer);
+    }
+  }
+
+  private HashMap<String, String> load() {
+    if (entries != null) {
+      return entries;
+    }
+    entries = new HashMap<>();
+    lines = 0;
+    file = new File(FileUtil.dataFolder(context), name);
+    if (!file.exists()) {
+      return entries;
+    }
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        final int tab = line.indexOf('\t');
+        if (tab > 0) {
+          entries.put(line.substring(0, tab), line.substring(tab + 1));
+          lines++;
+        }
+      }
+    } catch (Exception e) {
+      warn(TAG, "Unable to read %s: %s", file.getName(), e);
+    } finally {
+      closeQuietly(reader);
+    }
+    return entries;
+  }
+
+  private void compact() {
+    final File temp = new File(file.getPath() + ".tmp");
+    Writer writer = null;
+    try {
+      mkdirs();
+      writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        writer.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+      }
+      writer.close();
+      writer = null;
+      if (!temp.renameTo(file)) {
+        throw new Exception("Unable to replace " + file);
+      }
+      lines = entries.size();
+    } catch (Exception e) {
+      warn(TAG, "Unable to compact %s: %s", file.getName(), e);
+    } finally {
+      closeQuietly(writer);
+    }
+  }
+
+  private Writer append() throws Exception {
+    mkdirs();
+    return new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+  }
+
+  private void mkdirs() throws Exception {
+    final File folder = file.getParentFile();
+    if (!folder.exists() && !folder.mkdirs()) {
+      throw new Exception("Unable to create " + folder);
+    }
+  }
+}
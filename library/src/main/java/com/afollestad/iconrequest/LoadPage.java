@@ -0,0 +1,46 @@
+package com.afollestad.iconrequest;
+
+import android.support.annotation.Nullable;
+import com.google.auto.value.AutoValue;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One step of {@link PolarRequest#loadPaged(int)}. Pages carry apps as they're resolved, in no
+ * particular order. The last page carries every app, sorted, like {@link LoadResult}.
+ */
+@SuppressWarnings("WeakerAccess")
+@AutoValue
+public abstract class LoadPage {
+
+  static LoadPage page(List<AppModel> apps, int scanned, int total) {
+    return new AutoValue_LoadPage(apps, false, scanned, total, null);
+  }
+
+  static LoadPage last(List<AppModel> apps, int total) {
+    return new AutoValue_LoadPage(apps, true, total, total, null);
+  }
+
+  static LoadPage create(Exception error) {
+    return new AutoValue_LoadPage(new ArrayList<AppModel>(0), true, 0, 0, error);
+  }
+
+  public boolean success() {
+    return error() == null;
+  }
+
+  /** The apps resolved since the previous page, or every app if this is the last page. */
+  public abstract List<AppModel> apps();
+
+  /** Whether this is the final, sorted snapshot. Nothing is emitted after it. */
+  public abstract boolean last();
+
+  /** The number of installed packages gone through so far. */
+  public abstract int scanned();
+
+  /** The number of installed packages. */
+  public abstract int total();
+
+  @Nullable
+  public abstract Exception error();
+}
@@ -0,0 +1,53 @@
+package com.afollestad.iconrequest;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Collects {@link PhaseMetric}s from the load and send pipelines. While nothing observes them, no
+ * clock is read and callers skip byte counting which costs I/O, see {@link #enabled()}.
+ */
+class Metrics {
+
+  private final Subject<PhaseMetric> subject;
+
+  Metrics() {
+    this.subject = PublishSubject.<PhaseMetric>create().toSerialized();
+  }
+
+  /** Whether metrics are observed, otherwise timings and byte counts are thrown away. */
+  boolean enabled() {
+    return subject.hasObservers();
+  }
+
+  /** The start of a phase, or 0 without reading the clock while metrics aren't observed. */
+  long now() {
+    return enabled() ? System.nanoTime() : 0;
+  }
+
+  /** Nanoseconds since start, or 0 if the phase started while metrics weren't observed. */
+  long since(long startNanos) {
+    return startNanos != 0 ? System.nanoTime() - startNanos : 0;
+  }
+
+  void record(PhaseMetric.Phase phase, long startNanos, int itemCount, long bytes) {
+    // A phase which started before anything observed metrics has no valid start
+    if (startNanos == 0) {
+      return;
+    }
+    recordDuration(phase, since(startNanos), itemCount, bytes);
+  }
+
+  void recordDuration(PhaseMetric.Phase phase, long durationNanos, int itemCount, long bytes) {
+    // Durations pieced together across the moment metrics got observed come out negative
+    if (durationNanos < 0 || !subject.hasObservers()) {
+      return;
+    }
+    subject.onNext(PhaseMetric.create(phase, durationNanos, itemCount, bytes));
+  }
+
+  Observable<PhaseMetric> observe() {
+    return subject;
+  }
+}
@@ -0,0 +1,45 @@
+package com.afollestad.iconrequest;
+
+import com.google.auto.value.AutoValue;
+
+/** Timing and size of one phase of a load or send, emitted by {@link PolarRequest#metrics()}. */
+@SuppressWarnings("WeakerAccess")
+@AutoValue
+public abstract class PhaseMetric {
+
+  public enum Phase {
+    LOAD_FILTER_OPEN,
+    LOAD_FILTER_PARSE,
+    LOAD_DRAWABLE_VALIDATION,
+    LOAD_FILTER_INDEX,
+    LOAD_FILTER_COMPILED,
+    LOAD_PM_QUERY,
+    LOAD_LABELS,
+    LOAD_SORT,
+    LOAD_TRANSFER_STATES,
+    LOAD_REQUESTED,
+    SEND_ICON_RENDER,
+    SEND_ICON_ENCODE,
+    SEND_APPFILTER,
+    SEND_ZIP,
+    SEND_UPLOAD
+  }
+
+  static PhaseMetric create(Phase phase, long durationNanos, int itemCount, long bytes) {
+    return new AutoValue_PhaseMetric(phase, durationNanos, itemCount, bytes);
+  }
+
+  public abstract Phase phase();
+
+  public abstract long durationNanos();
+
+  /** The number of items the phase processed, e.g. filter entries, apps or icons. */
+  public abstract int itemCount();
+
+  /** The number of bytes read or written by the phase, or 0 when it doesn't touch I/O. */
+  public abstract long bytes();
+
+  public long durationMillis() {
+    return durationNanos() / 1_000_000L;
+  }
+}
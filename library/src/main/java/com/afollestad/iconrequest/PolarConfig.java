@@ -1,30 +1,50 @@
 package com.afollestad.iconrequest;
 
-import static com.afollestad.iconrequest.FileUtil.wipe;
-
 import android.content.Context;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.google.auto.value.AutoValue;
-import java.io.File;
 
 @SuppressWarnings("WeakerAccess")
 @AutoValue
 public abstract class PolarConfig implements Parcelable {
 
+  /** How icons are encoded into request archives. */
+  public enum IconFormat {
+    PNG,
+    /**
+     * Lossless WebP, smaller than PNG. The platform only encodes lossless WebP from API 29, older
+     * devices write PNG instead.
+     */
+    WEBP
+  }
+
   public static Builder create(@NonNull Context context) {
-    File defaultCache = new File(context.getExternalCacheDir(), "com.afollestad.polar");
-    wipe(defaultCache);
     return new AutoValue_PolarConfig.Builder()
-        .cacheFolder(defaultCache.getAbsolutePath())
         .appFilterName("appfilter.xml")
         .emailSubject("Icon Request")
         .emailHeader("These apps aren't themed on my device!")
         .errorOnInvalidDrawables(true)
-        .includeDeviceInfo(true);
+        .includeDeviceInfo(true)
+        .emailListingLimit(100)
+        .traceEnabled(false)
+        .uploadChunkSize(0)
+        .requestExpiryDays(0)
+        .iconMaxSize(0)
+        .iconFormat(IconFormat.PNG)
+        .iconPaletteSize(0)
+        .cacheMaxBytes(32L * 1024 * 1024)
+        .cacheMaxAgeDays(7)
+        .progressIntervalMillis(100)
+        .loadReuseMillis(1000);
   }
 
+  /**
+   * Where archives, the outbox and upload progress are kept. By default a folder in the external
+   * cache directory, which is only looked up when it's first used on a background thread.
+   */
+  @Nullable
   public abstract String cacheFolder();
 
   public abstract String appFilterName();
@@ -43,8 +63,68 @@ public abstract class PolarConfig implements Parcelable {
 
   public abstract boolean includeDeviceInfo();
 
+  /**
+   * Fails loading when an appfilter item's drawable doesn't exist. Filters compiled by the
+   * appfilter Gradle plugin were validated at build time and aren't checked again.
+   */
   public abstract boolean errorOnInvalidDrawables();
 
+  /**
+   * Above this many selected apps, the per-app listing is written into the request archive as a
+   * CSV manifest and the email body only contains a summary.
+   */
+  public abstract int emailListingLimit();
+
+  /** Whether the load and send pipelines emit android.os.Trace sections for systrace/Perfetto. */
+  public abstract boolean traceEnabled();
+
+  /**
+   * When above 0, remote requests with more apps than this are uploaded as chunks of at most this
+   * many apps. A failed upload resumes after the last chunk the server acknowledged.
+   */
+  public abstract int uploadChunkSize();
+
+  /**
+   * Sent apps are remembered as requested across restarts. When above 0, they can be requested
+   * again after this many days, otherwise they stay requested.
+   */
+  public abstract int requestExpiryDays();
+
+  /**
+   * When above 0, icons larger than this many pixels on their longest edge are downscaled with
+   * area averaging before they're put into the archive.
+   */
+  public abstract int iconMaxSize();
+
+  public abstract IconFormat iconFormat();
+
+  /**
+   * When above 0, icons are quantized to at most this many colors (up to 256). PNG icons are then
+   * written as palette PNGs, which are a fraction of the size of truecolor ones.
+   */
+  public abstract int iconPaletteSize();
+
+  /**
+   * The cache folder is trimmed in the background to roughly this many bytes, evicting the least
+   * recently used archives first. 0 disables the size limit.
+   */
+  public abstract long cacheMaxBytes();
+
+  /** Archives which weren't used for this many days are evicted. 0 disables the age limit. */
+  public abstract int cacheMaxAgeDays();
+
+  /**
+   * {@link PolarRequest#sendProgress()} reports at most once per this many milliseconds within a
+   * stage, so large requests don't flood the main thread. 0 reports every item.
+   */
+  public abstract int progressIntervalMillis();
+
+  /**
+   * {@link PolarRequest#load()} calls within this many milliseconds of a finished load reuse it
+   * instead of scanning again. 0 always scans again once the previous load finished.
+   */
+  public abstract int loadReuseMillis();
+
   @Nullable
   public abstract String apiHost();
 
@@ -54,7 +134,7 @@ public abstract class PolarConfig implements Parcelable {
   @AutoValue.Builder
   public abstract static class Builder {
 
-    public abstract Builder cacheFolder(String folder);
+    public abstract Builder cacheFolder(@Nullable String folder);
 
     public abstract Builder appFilterName(String name);
 
@@ -70,6 +150,28 @@ public abstract class PolarConfig implements Parcelable {
 
     public abstract Builder errorOnInvalidDrawables(boolean error);
 
+    public abstract Builder emailListingLimit(int limit);
+
+    public abstract Builder traceEnabled(boolean enabled);
+
+    public abstract Builder uploadChunkSize(int apps);
+
+    public abstract Builder requestExpiryDays(int days);
+
+    public abstract Builder iconMaxSize(int pixels);
+
+    public abstract Builder iconFormat(IconFormat format);
+
+    public abstract Builder iconPaletteSize(int colors);
+
+    public abstract Builder cacheMaxBytes(long bytes);
+
+    public abstract Builder cacheMaxAgeDays(int days);
+
+    public abstract Builder progressIntervalMillis(int millis);
+
+    public abstract Builder loadReuseMillis(int millis);
+
     public abstract Builder apiHost(@Nullable String host);
 
     public abstract Builder apiKey(@Nullable String key);
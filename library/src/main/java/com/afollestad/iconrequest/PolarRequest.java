@@ -5,17 +5,28 @@ import static com.afollestad.iconrequest.IRLog.log;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import com.afollestad.iconrequest.PhaseMetric.Phase;
+import com.afollestad.iconrequest.core.AppInventory;
+import com.afollestad.iconrequest.core.ComponentFilter;
+import com.afollestad.iconrequest.core.ComponentJoin;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
-import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
 import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 @SuppressWarnings("WeakerAccess")
 public class PolarRequest {
@@ -24,35 +35,50 @@ public class PolarRequest {
   private static final String KEY_CONFIG = "ir.config";
   private static final String KEY_FILTER = "ir.loadedFilter";
   private static final String KEY_APPS = "ir.loadedApps";
+  private static final String KEY_APP_FLAGS = "ir.loadedAppFlags";
+  private static final byte FLAG_SELECTED = 1;
+  private static final byte FLAG_REQUESTED = 2;
 
-  private final PublishSubject<Boolean> loadingSubject;
-  private final PublishSubject<LoadResult> loadedSubject;
+  private final Subject<Boolean> loadingSubject;
+  private final Subject<LoadResult> loadedSubject;
   private final PublishSubject<Boolean> sendingSubject;
   private final PublishSubject<SendResult> sentSubject;
+  private final Subject<SendProgress> sendProgressSubject;
   private final PublishSubject<AppModel> selectionChangeSubject;
+  private final Metrics metrics;
 
+  private final Context context;
   private final AppFilterSource appFilterSource;
   private final ComponentInfoSource componentInfoSource;
   private final SendInteractor sendInteractor;
-  PolarConfig config;
+  private final RequestOutbox outbox;
+  private final RequestedApps requestedApps;
+  private final AppState state;
+  volatile PolarConfig config;
+  volatile PolarSchedulers schedulers;
   Function<Uri, Uri> uriTransformer;
-  private HashSet<String> loadedFilter;
-  private List<AppModel> loadedApps;
+  @Nullable private RequestTransport transport;
+  @Nullable private SharedLoad sharedLoad;
 
   private PolarRequest(@NonNull Context context) {
-    this.loadingSubject = PublishSubject.create();
-    this.loadedSubject = PublishSubject.create();
+    this.loadingSubject = BehaviorSubject.<Boolean>create().toSerialized();
+    this.loadedSubject = BehaviorSubject.<LoadResult>create().toSerialized();
     this.sendingSubject = PublishSubject.create();
     this.sentSubject = PublishSubject.create();
+    this.sendProgressSubject = PublishSubject.<SendProgress>create().toSerialized();
     this.selectionChangeSubject = PublishSubject.create();
+    this.metrics = new Metrics();
 
-    this.appFilterSource = new AppFilterAssets(context);
-    this.componentInfoSource = new ComponentInfoPm(context);
-    this.sendInteractor = new RealSendInteractor(context);
+    this.context = context;
+    this.appFilterSource = new AppFilterAssets(context, metrics);
+    this.componentInfoSource = new ComponentInfoPm(context, metrics);
+    this.sendInteractor = new RealSendInteractor(context, metrics);
+    this.outbox = new RequestOutbox(context, this);
+    this.requestedApps = new RequestedApps(context);
 
-    this.loadedFilter = new HashSet<>(0);
-    this.loadedApps = new ArrayList<>(0);
+    this.state = new AppState();
     this.config = PolarConfig.create(context).build();
+    this.schedulers = PolarSchedulers.create().build();
     this.uriTransformer = uri -> uri;
   }
 
@@ -63,6 +89,7 @@ public class PolarRequest {
 
   public PolarRequest config(@NonNull PolarConfig config) {
     this.config = config;
+    onConfigChanged();
     return this;
   }
 
@@ -75,17 +102,18 @@ public class PolarRequest {
     if (config == null) {
       config = PolarConfig.create(context).build();
     }
-    //noinspection unchecked
-    loadedFilter = (HashSet<String>) savedInstanceState.getSerializable(KEY_FILTER);
-    if (loadedFilter == null) {
-      loadedFilter = new HashSet<>(0);
-    }
-    loadedApps = savedInstanceState.getParcelableArrayList(KEY_APPS);
-    if (loadedApps == null) {
-      loadedApps = new ArrayList<>(0);
-    } else if (!loadedApps.isEmpty()) {
-      log(TAG, "Got %d apps from restored instance state.", loadedApps.size());
-      loadedSubject.onNext(LoadResult.create(loadedApps));
+    onConfigChanged();
+    final ComponentFilter loadedFilter =
+        restoreFilter(savedInstanceState.getSerializable(KEY_FILTER));
+    final ArrayList<AppModel> loadedApps =
+        restoreApps(
+            savedInstanceState.getSerializable(KEY_APPS),
+            savedInstanceState.getByteArray(KEY_APP_FLAGS));
+    final AppState.Snapshot snapshot = new AppState.Snapshot(loadedFilter, loadedApps);
+    state.set(snapshot);
+    if (!snapshot.apps.isEmpty()) {
+      log(TAG, "Got %d apps from restored instance state.", snapshot.apps.size());
+      loadedSubject.onNext(LoadResult.create(snapshot.apps));
       loadingSubject.onNext(false);
     }
     return this;
@@ -95,9 +123,61 @@ public class PolarRequest {
     if (out == null) {
       return;
     }
+    final AppState.Snapshot snapshot = state.get();
     out.putParcelable(KEY_CONFIG, config);
-    out.putSerializable(KEY_FILTER, loadedFilter);
-    out.putParcelableArrayList(KEY_APPS, (ArrayList<AppModel>) loadedApps);
+    out.putSerializable(KEY_FILTER, snapshot.filter);
+    // Thousands of apps as parcelables can get close to the binder transaction limit, the
+    // inventory pools packages and stores everything else in flat arrays.
+    final byte[] flags = new byte[snapshot.apps.size()];
+    for (int i = 0; i < flags.length; i++) {
+      final AppModel app = snapshot.apps.get(i);
+      flags[i] =
+          (byte) ((app.selected() ? FLAG_SELECTED : 0) | (app.requested() ? FLAG_REQUESTED : 0));
+    }
+    out.putSerializable(KEY_APPS, AppInventory.of(snapshot.apps));
+    out.putByteArray(KEY_APP_FLAGS, flags);
+  }
+
+  // Saved state from before the filter was compacted holds a HashSet.
+  private static ComponentFilter restoreFilter(@Nullable Serializable saved) {
+    if (saved instanceof ComponentFilter) {
+      return (ComponentFilter) saved;
+    } else if (saved instanceof Set) {
+      // Only this class ever wrote the key, and it wrote a HashSet<String>
+      @SuppressWarnings("unchecked")
+      final Set<String> components = (Set<String>) saved;
+      return ComponentFilter.of(components);
+    }
+    return ComponentFilter.of(Collections.<String>emptySet());
+  }
+
+  // Saved state from before the inventory holds a list of AppModels, which carry their own flags.
+  private static ArrayList<AppModel> restoreApps(
+      @Nullable Serializable saved, @Nullable byte[] flags) {
+    if (saved instanceof List) {
+      final List<?> legacy = (List<?>) saved;
+      final ArrayList<AppModel> apps = new ArrayList<>(legacy.size());
+      for (Object app : legacy) {
+        if (app instanceof AppModel) {
+          apps.add((AppModel) app);
+        }
+      }
+      return apps;
+    }
+    if (!(saved instanceof AppInventory)
+        || flags == null
+        || flags.length != ((AppInventory) saved).size()) {
+      return new ArrayList<>(0);
+    }
+    final AppInventory inventory = (AppInventory) saved;
+    final ArrayList<AppModel> apps = new ArrayList<>(inventory.size());
+    for (int i = 0; i < inventory.size(); i++) {
+      apps.add(
+          AppModel.create(inventory.name(i), inventory.code(i), inventory.pkg(i))
+              .withSelectedAndRequested(
+                  (flags[i] & FLAG_SELECTED) != 0, (flags[i] & FLAG_REQUESTED) != 0));
+    }
+    return apps;
   }
 
   @NonNull
@@ -106,64 +186,289 @@ public class PolarRequest {
     return this;
   }
 
+  /** Runs loads, sends and background work on the given schedulers. */
+  @NonNull
+  public PolarRequest schedulers(@NonNull PolarSchedulers schedulers) {
+    this.schedulers = schedulers;
+    return this;
+  }
+
+  /** Uses the given transport for remote requests instead of the built-in HTTP client. */
+  @NonNull
+  public PolarRequest transport(@NonNull RequestTransport transport) {
+    this.transport = transport;
+    return this;
+  }
+
+  @NonNull
+  synchronized RequestTransport transport() {
+    if (transport instanceof HttpRequestTransport
+        && !((HttpRequestTransport) transport).matches(config.apiHost(), config.apiKey())) {
+      transport = null;
+    }
+    if (transport == null) {
+      transport = new HttpRequestTransport(config.apiHost(), config.apiKey());
+    }
+    return transport;
+  }
+
+  RequestOutbox outbox() {
+    return outbox;
+  }
+
+  RequestedApps requestedApps() {
+    return requestedApps;
+  }
+
+  private void onConfigChanged() {
+    IRTrace.setEnabled(config.traceEnabled());
+    RequestCache.trimInBackground(context, config, schedulers.background());
+    // Requests left in the outbox by a previous session are sent again once there's an API key.
+    if (config.apiKey() != null && !config.apiKey().isEmpty()) {
+      outbox.resume();
+    }
+  }
+
   private static void transferStates(List<AppModel> from, final List<AppModel> to) {
-    Observable.just(from)
-        .flatMapIterable(appModels -> appModels)
-        .filter(AppModel::selected)
-        .forEach(
-            appModel -> {
-              for (int i = 0; i < to.size(); i++) {
-                AppModel current = to.get(i);
-                if (appModel.code().equals(current.code())) {
-                  to.set(
-                      i,
-                      current.withSelectedAndRequested(appModel.selected(), appModel.requested()));
-                  break;
-                }
-              }
-            });
+    ComponentJoin.transfer(
+        from,
+        to,
+        AppModel::code,
+        (previous, loaded) ->
+            previous.selected()
+                ? loaded.withSelectedAndRequested(true, previous.requested() || loaded.requested())
+                : loaded);
   }
 
+  /**
+   * Loads unthemed apps. Concurrent calls share a single load, and calls within {@link
+   * PolarConfig#loadReuseMillis()} of a finished load reuse it instead of scanning again. Either
+   * way the result holds the current apps, including selections made since. Once every subscriber
+   * of an unfinished load is disposed, the load is cancelled and loading() goes back to false.
+   */
   @NonNull
   public Observable<LoadResult> load() {
+    return Observable.defer(this::sharedLoad)
+        .map(
+            loadResult ->
+                loadResult.success() ? LoadResult.create(state.get().apps) : loadResult)
+        .observeOn(schedulers.main());
+  }
+
+  /**
+   * Joins the current load, or starts one. Joining, leaving and replacing the shared load all
+   * happen under this lock, so a subscriber never joins a load that the last one to leave just
+   * cancelled.
+   */
+  private synchronized Observable<LoadResult> sharedLoad() {
+    SharedLoad load = sharedLoad;
+    if (load == null
+        || (load.finishedAt != 0
+            && SystemClock.elapsedRealtime() - load.finishedAt >= config.loadReuseMillis())) {
+      final SharedLoad created = new SharedLoad();
+      created.observable =
+          newLoad(created.token)
+              .doOnNext(loadResult -> loadFinished(created, loadResult.success()))
+              .doOnError(error -> loadFinished(created, false))
+              .cache();
+      sharedLoad = load = created;
+    }
+    final SharedLoad joined = load;
+    joined.subscribers++;
+    return joined.observable.doOnDispose(() -> loadDisposed(joined));
+  }
+
+  // Nobody is waiting for the load anymore, so it's stopped rather than left to finish.
+  private synchronized void loadDisposed(SharedLoad load) {
+    if (--load.subscribers == 0 && load.finishedAt == 0) {
+      load.token.cancel();
+      if (sharedLoad == load) {
+        sharedLoad = null;
+      }
+    }
+  }
+
+  // Failed loads aren't reused, so the next call retries right away.
+  private synchronized void loadFinished(SharedLoad load, boolean reusable) {
+    if (reusable) {
+      load.finishedAt = SystemClock.elapsedRealtime();
+    } else if (sharedLoad == load) {
+      sharedLoad = null;
+    }
+  }
+
+  private Observable<LoadResult> newLoad(CancellationToken token) {
     return Observable.fromCallable(
             () -> {
               loadingSubject.onNext(true);
+              final int cookie = IRTrace.beginAsync("load");
               try {
-                loadedFilter =
-                    appFilterSource.load(config.appFilterName(), config.errorOnInvalidDrawables());
-              } catch (Exception e) {
+                final ComponentFilter filter;
+                try {
+                  filter =
+                      appFilterSource.load(
+                          config.appFilterName(), config.errorOnInvalidDrawables());
+                } catch (Exception e) {
+                  return LoadResult.create(e);
+                }
+                final ArrayList<AppModel> apps =
+                    componentInfoSource.getInstalledApps(filter, token);
+                token.throwIfCancelled();
+                return finishLoad(filter, apps);
+              } catch (CancellationException e) {
+                log(TAG, "Load cancelled.");
                 return LoadResult.create(e);
+              } finally {
+                IRTrace.endAsync("load", cookie);
               }
-              List<AppModel> newLoadedApps = componentInfoSource.getInstalledApps(loadedFilter);
-              if (!loadedApps.isEmpty()) {
-                transferStates(loadedApps, newLoadedApps);
-              }
-              loadedApps = newLoadedApps;
-              return LoadResult.create(loadedApps);
             })
-        .observeOn(AndroidSchedulers.mainThread())
-        .subscribeOn(Schedulers.computation())
+        .observeOn(schedulers.main())
+        .subscribeOn(schedulers.load())
         .doOnNext(
             loadResult -> {
               loadingSubject.onNext(false);
-              loadedSubject.onNext(loadResult);
+              if (!(loadResult.error() instanceof CancellationException)) {
+                loadedSubject.onNext(loadResult);
+              }
             });
   }
 
+  /**
+   * Like {@link #load()}, but emits apps in pages of up to pageSize as they're resolved, so the
+   * first ones can be shown right away. Pages are only resolved as fast as they're requested. The
+   * last page holds every app, sorted, and is also emitted through {@link #loaded()}. Cancelling
+   * the subscription stops the scan after the page in progress.
+   */
+  @NonNull
+  public Flowable<LoadPage> loadPaged(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("pageSize must be at least 1: " + pageSize);
+    }
+    return Flowable.generate(
+            PagedLoad::new,
+            (PagedLoad load, Emitter<LoadPage> emitter) -> nextPage(load, emitter, pageSize),
+            load -> IRTrace.endAsync("loadPaged", load.cookie))
+        .subscribeOn(schedulers.load())
+        // Buffers a single page, so the scan doesn't run ahead of what's requested downstream
+        .observeOn(schedulers.main(), false, 1)
+        .doOnNext(
+            page -> {
+              if (!page.last()) {
+                return;
+              }
+              loadingSubject.onNext(false);
+              if (page.success()) {
+                loadedSubject.onNext(LoadResult.create(page.apps()));
+              } else {
+                loadedSubject.onNext(LoadResult.create(page.error()));
+              }
+            })
+        .doOnError(error -> loadingSubject.onNext(false))
+        .doOnCancel(() -> loadingSubject.onNext(false));
+  }
+
+  private void nextPage(PagedLoad load, Emitter<LoadPage> emitter, int pageSize) {
+    if (load.scan == null) {
+      loadingSubject.onNext(true);
+      try {
+        load.filter =
+            appFilterSource.load(config.appFilterName(), config.errorOnInvalidDrawables());
+      } catch (Exception e) {
+        emitter.onNext(LoadPage.create(e));
+        emitter.onComplete();
+        return;
+      }
+      load.scan = componentInfoSource.scan(load.filter);
+    }
+    while (load.scan.hasNext()) {
+      final List<AppModel> apps = load.scan.next(pageSize);
+      if (!apps.isEmpty()) {
+        emitter.onNext(LoadPage.page(apps, load.scan.scanned(), load.scan.total()));
+        return;
+      }
+    }
+    final LoadResult result = finishLoad(load.filter, load.scan.finish());
+    emitter.onNext(LoadPage.last(result.apps(), load.scan.total()));
+    emitter.onComplete();
+  }
+
+  /**
+   * Carries selection and requested states over to freshly loaded apps, and swaps them in along
+   * with their filter. Selections made in the meantime are transferred too, since the swap is
+   * retried against whatever the current snapshot is.
+   */
+  private LoadResult finishLoad(ComponentFilter filter, List<AppModel> newLoadedApps) {
+    long start = metrics.now();
+    int requested;
+    IRTrace.begin("PolarRequest.requestedApps");
+    try {
+      requested = requestedApps.apply(newLoadedApps, config.requestExpiryDays());
+    } finally {
+      IRTrace.end();
+    }
+    metrics.record(Phase.LOAD_REQUESTED, start, requested, 0);
+
+    start = metrics.now();
+    IRTrace.begin("PolarRequest.transferStates");
+    final AppState.Snapshot snapshot;
+    try {
+      snapshot =
+          state.update(
+              current -> {
+                final ArrayList<AppModel> apps = new ArrayList<>(newLoadedApps);
+                if (!current.apps.isEmpty()) {
+                  transferStates(current.apps, apps);
+                }
+                return new AppState.Snapshot(filter, apps);
+              });
+    } finally {
+      IRTrace.end();
+    }
+    metrics.record(Phase.LOAD_TRANSFER_STATES, start, snapshot.apps.size(), 0);
+    return LoadResult.create(snapshot.apps);
+  }
+
+  private static class SharedLoad {
+
+    final CancellationToken token = new CancellationToken();
+    Observable<LoadResult> observable;
+    int subscribers;
+    long finishedAt;
+  }
+
+  private static class PagedLoad {
+
+    final int cookie = IRTrace.beginAsync("loadPaged");
+    ComponentFilter filter;
+    ComponentInfoSource.Scan scan;
+  }
+
+  /**
+   * A copy of the filter of the latest load.
+   *
+   * @deprecated Copies every component into a HashSet, use {@link #getLoadedComponentFilter()}.
+   */
+  @Deprecated
   @NonNull
   public HashSet<String> getLoadedFilter() {
-    return loadedFilter;
+    return new HashSet<>(state.get().filter);
+  }
+
+  /** The filter of the latest load. It's immutable, and shared rather than copied. */
+  @NonNull
+  public ComponentFilter getLoadedComponentFilter() {
+    return state.get().filter;
   }
 
+  /** A read-only snapshot of the loaded apps, it doesn't change with later selections. */
   @NonNull
   public List<AppModel> getLoadedApps() {
-    return loadedApps;
+    return state.get().apps;
   }
 
   @NonNull
   public Single<List<AppModel>> getSelectedApps() {
-    return Observable.just(loadedApps)
+    return Observable.just(state.get().apps)
         .flatMapIterable(appModels -> appModels)
         .filter(AppModel::selected)
         .toList();
@@ -171,166 +476,192 @@ public class PolarRequest {
 
   @NonNull
   public Single<List<AppModel>> getRequestedApps() {
-    return Observable.just(loadedApps)
+    return Observable.just(state.get().apps)
         .flatMapIterable(appModels -> appModels)
         .filter(AppModel::requested)
         .toList();
   }
 
   public boolean isSelected(@NonNull AppModel app) {
-    int index = loadedApps.indexOf(app);
-    if (index == -1) {
-      throw new IllegalArgumentException(
-          "Unable to find app " + app.pkg() + " in this list of loaded apps!");
-    }
-    return loadedApps.get(index).selected();
+    final AppState.Snapshot snapshot = state.get();
+    return snapshot.apps.get(snapshot.indexOf(app)).selected();
   }
 
   @NonNull
   public PolarRequest select(@NonNull AppModel app) {
-    int index = loadedApps.indexOf(app);
-    if (index == -1) {
-      throw new IllegalArgumentException(
-          "Unable to find app " + app.pkg() + " in this list of loaded apps!");
-    }
-    app = loadedApps.get(index);
-    if (app.selected()) {
-      return this;
-    }
-    app = app.withSelected(true);
-    loadedApps.set(index, app);
-    selectionChangeSubject.onNext(app);
-    return this;
+    return setSelected(app, false, true);
   }
 
   @NonNull
   public PolarRequest deselect(@NonNull AppModel app) {
-    int index = loadedApps.indexOf(app);
-    if (index == -1) {
-      throw new IllegalArgumentException(
-          "Unable to find app " + app.pkg() + " in this list of loaded apps!");
-    }
-    app = loadedApps.get(index);
-    if (!app.selected()) {
-      return this;
-    }
-    app = app.withSelected(false);
-    loadedApps.set(index, app);
-    selectionChangeSubject.onNext(app);
-    return this;
+    return setSelected(app, false, false);
   }
 
   @NonNull
   public PolarRequest toggleSelection(@NonNull AppModel app) {
-    int index = loadedApps.indexOf(app);
-    if (index == -1) {
-      throw new IllegalArgumentException(
-          "Unable to find app " + app.pkg() + " in this list of loaded apps!");
+    return setSelected(app, true, false);
+  }
+
+  /** Sets the selection state of the app, or inverts it if toggle is true. */
+  private PolarRequest setSelected(@NonNull AppModel app, boolean toggle, boolean selected) {
+    final AppModel[] changed = new AppModel[1];
+    state.update(
+        current -> {
+          changed[0] = null;
+          final int index = current.indexOf(app);
+          final AppModel currentApp = current.apps.get(index);
+          final boolean newSelected = toggle ? !currentApp.selected() : selected;
+          if (currentApp.selected() == newSelected) {
+            return current;
+          }
+          final ArrayList<AppModel> apps = current.copyApps();
+          changed[0] = currentApp.withSelected(newSelected);
+          apps.set(index, changed[0]);
+          return current.withApps(apps);
+        });
+    if (changed[0] != null) {
+      selectionChangeSubject.onNext(changed[0]);
     }
-    app = loadedApps.get(index);
-    // Toggle selection state
-    app = app.withSelected(!app.selected());
-    loadedApps.set(index, app);
-    selectionChangeSubject.onNext(app);
     return this;
   }
 
   @NonNull
   public PolarRequest selectAll() {
-    for (int i = 0; i < loadedApps.size(); i++) {
-      AppModel app = loadedApps.get(i);
-      if (app.selected()) {
-        continue;
-      }
-      app = app.withSelected(true);
-      loadedApps.set(i, app);
-    }
-    loadedSubject.onNext(LoadResult.create(loadedApps));
+    loadedSubject.onNext(
+        LoadResult.create(state.update(current -> withAllSelected(current, true)).apps));
     return this;
   }
 
   @NonNull
   public PolarRequest deselectAll() {
-    for (int i = 0; i < loadedApps.size(); i++) {
-      AppModel app = loadedApps.get(i);
-      if (!app.selected()) {
-        continue;
-      }
-      app = app.withSelected(false);
-      loadedApps.set(i, app);
-    }
-    loadedSubject.onNext(LoadResult.create(loadedApps));
+    loadedSubject.onNext(
+        LoadResult.create(state.update(current -> withAllSelected(current, false)).apps));
     return this;
   }
 
-  private void resetSelection() {
-    for (int i = 0; i < loadedApps.size(); i++) {
-      AppModel app = loadedApps.get(i);
-      if (!app.selected()) {
+  private static AppState.Snapshot withAllSelected(AppState.Snapshot current, boolean selected) {
+    ArrayList<AppModel> apps = null;
+    for (int i = 0; i < current.apps.size(); i++) {
+      final AppModel app = current.apps.get(i);
+      if (app.selected() == selected) {
         continue;
       }
-      app = app.withSelected(false).withRequested(true);
-      loadedApps.set(i, app);
+      if (apps == null) {
+        apps = current.copyApps();
+      }
+      apps.set(i, app.withSelected(selected));
     }
-    loadedSubject.onNext(LoadResult.create(loadedApps));
+    return apps != null ? current.withApps(apps) : current;
   }
 
+  private void resetSelection() {
+    final AppState.Snapshot snapshot =
+        state.update(
+            current -> {
+              ArrayList<AppModel> apps = null;
+              for (int i = 0; i < current.apps.size(); i++) {
+                final AppModel app = current.apps.get(i);
+                if (!app.selected()) {
+                  continue;
+                }
+                if (apps == null) {
+                  apps = current.copyApps();
+                }
+                apps.set(i, app.withSelected(false).withRequested(true));
+              }
+              return apps != null ? current.withApps(apps) : current;
+            });
+    loadedSubject.onNext(LoadResult.create(snapshot.apps));
+  }
+
+  /**
+   * Sends the selected apps, which are deselected and marked as requested once it succeeded. A
+   * failed send keeps the selection. Disposing before the request is handed off stops the send
+   * between icons and removes what it wrote to the cache folder; the selection is kept.
+   */
   @NonNull
   public Observable<SendResult> send() {
-
+    final CancellationToken token = new CancellationToken();
+    final SendProgressReporter progress =
+        new SendProgressReporter(sendProgressSubject, config.progressIntervalMillis());
     return Observable.fromCallable(
             () -> {
               sendingSubject.onNext(true);
               try {
                 List<AppModel> selectedApps = getSelectedApps().blockingGet();
-                boolean remote = sendInteractor.send(selectedApps, PolarRequest.this);
-                return SendResult.create(selectedApps.size(), remote);
+                return sendInteractor.send(selectedApps, PolarRequest.this, token, progress);
+              } catch (CancellationException e) {
+                sendingSubject.onNext(false);
+                return SendResult.create(e);
               } catch (Exception e) {
                 return SendResult.create(e);
               }
             })
-        .observeOn(AndroidSchedulers.mainThread())
-        .subscribeOn(Schedulers.computation())
+        .doOnDispose(token::cancel)
+        .observeOn(schedulers.main())
+        .subscribeOn(schedulers.send())
         .doOnNext(
             sendResult -> {
-              resetSelection();
+              // A failed send keeps the selection, so it can simply be sent again
+              if (sendResult.success()) {
+                resetSelection();
+              }
               sendingSubject.onNext(false);
               sentSubject.onNext(sendResult);
             });
   }
 
+  /** Emits whether apps are being loaded, starting with the current state if there is one. */
   @NonNull
   public Observable<Boolean> loading() {
-    return loadingSubject
-        .observeOn(AndroidSchedulers.mainThread())
-        .subscribeOn(Schedulers.computation());
+    return loadingSubject.observeOn(schedulers.main());
   }
 
+  /** Emits loaded apps as they change, starting with the latest result if there is one. */
   @NonNull
   public Observable<LoadResult> loaded() {
-    return loadedSubject
-        .observeOn(AndroidSchedulers.mainThread())
-        .subscribeOn(Schedulers.computation());
+    return loadedSubject.observeOn(schedulers.main());
   }
 
   @NonNull
   public Observable<Boolean> sending() {
-    return sendingSubject
-        .observeOn(AndroidSchedulers.mainThread())
-        .subscribeOn(Schedulers.computation());
+    return sendingSubject.observeOn(schedulers.main());
   }
 
   @NonNull
   public Observable<SendResult> sent() {
-    return sentSubject
-        .observeOn(AndroidSchedulers.mainThread())
-        .subscribeOn(Schedulers.computation());
+    return sentSubject.observeOn(schedulers.main());
+  }
+
+  /**
+   * Emits the stage of a running send, with its items and bytes done so far. Reports within a
+   * stage are throttled to {@link PolarConfig#progressIntervalMillis()}.
+   */
+  @NonNull
+  public Observable<SendProgress> sendProgress() {
+    return sendProgressSubject.observeOn(schedulers.main());
   }
 
   @NonNull
   public Observable<AppModel> selectionChange() {
-    return selectionChangeSubject
-        .observeOn(AndroidSchedulers.mainThread())
-        .subscribeOn(Schedulers.computation());
+    return selectionChangeSubject.observeOn(schedulers.main());
+  }
+
+  /**
+   * Emits the state of the outbox remote requests go through: queued, sent, retried after a
+   * network failure with backoff, or dropped after the server rejected them.
+   */
+  @NonNull
+  public Observable<DeliveryState> delivery() {
+    return outbox.observe().observeOn(schedulers.main());
+  }
+
+  /**
+   * Emits timing, item counts and byte sizes for each phase of {@link #load()} and {@link
+   * #send()}, on the thread doing the work. Nothing is recorded while there are no subscribers.
+   */
+  @NonNull
+  public Observable<PhaseMetric> metrics() {
+    return metrics.observe();
   }
 }
@@ -0,0 +1,67 @@
+package com.afollestad.iconrequest;
+
+import android.support.annotation.NonNull;
+import com.google.auto.value.AutoValue;
+import io.reactivex.Scheduler;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * The schedulers a {@link PolarRequest} runs its work on, set through {@link
+ * PolarRequest#schedulers(PolarSchedulers)}. Loading and sending mostly block on disk, binder calls
+ * and the network, so they default to the IO scheduler. Wrap an executor with {@link
+ * Schedulers#from(java.util.concurrent.Executor)} to use your own threads, or pass {@link
+ * Schedulers#trampoline()} everywhere to run synchronously in tests.
+ */
+@SuppressWarnings("WeakerAccess")
+@AutoValue
+public abstract class PolarSchedulers {
+
+  public static Builder create() {
+    return new AutoValue_PolarSchedulers.Builder()
+        .load(Schedulers.io())
+        .send(Schedulers.io())
+        .encode(Schedulers.computation())
+        .background(Schedulers.io())
+        .main(AndroidSchedulers.mainThread());
+  }
+
+  /**
+   * Runs {@link PolarRequest#load()} and {@link PolarRequest#loadPaged(int)}, and loads the icons
+   * of a send before they're encoded. The send waits on those, so it needs threads besides the one
+   * running the send.
+   */
+  public abstract Scheduler load();
+
+  /** Runs {@link PolarRequest#send()}. */
+  public abstract Scheduler send();
+
+  /**
+   * Encodes loaded icons while a send writes the archive, a few at a time. This is pixel work only,
+   * which suits the computation scheduler. It needs threads of its own, a scheduler backed by
+   * nothing but the send thread would wait on itself.
+   */
+  public abstract Scheduler encode();
+
+  /** Runs outbox retries, cache trimming and the uploads of chunked requests. */
+  public abstract Scheduler background();
+
+  /** Results and events are delivered on this one. */
+  public abstract Scheduler main();
+
+  @AutoValue.Builder
+  public abstract static class Builder {
+
+    public abstract Builder load(@NonNull Scheduler scheduler);
+
+    public abstract Builder send(@NonNull Scheduler scheduler);
+
+    public abstract Builder encode(@NonNull Scheduler scheduler);
+
+    public abstract Builder background(@NonNull Scheduler scheduler);
+
+    public abstract Builder main(@NonNull Scheduler scheduler);
+
+    public abstract PolarSchedulers build();
+  }
+}
@@ -1,41 +1,84 @@
 package com.afollestad.iconrequest;
 
-import static com.afollestad.bridge.Bridge.post;
-import static com.afollestad.iconrequest.FileUtil.writeAll;
+import static com.afollestad.iconrequest.FileUtil.closeQuietly;
 import static com.afollestad.iconrequest.IRLog.log;
+import static com.afollestad.iconrequest.IRLog.warn;
 import static com.afollestad.iconrequest.IRUtils.isEmpty;
-import static com.afollestad.iconrequest.ZipUtil.zip;
 
 import android.content.Context;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.Drawable;
+import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
+import android.support.annotation.Nullable;
 import android.text.Html;
-import com.afollestad.bridge.Bridge;
-import com.afollestad.bridge.MultipartForm;
+import com.afollestad.iconrequest.PhaseMetric.Phase;
+import com.afollestad.iconrequest.core.AppFilterWriter;
+import com.afollestad.iconrequest.core.RequestArchive;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import org.json.JSONObject;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 class RealSendInteractor implements SendInteractor {
 
   private static final String TAG = RealSendInteractor.class.getSimpleName();
-  private static final String RM_HOST = "https://polar.aidanfollestad.com";
+  private static final String MANIFEST_NAME = "apps.csv";
+  private static final String PLAY_LINK = "https://play.google.com/store/apps/details?id=";
+  private static final Comparator<AppModel> CODE_COMPARATOR =
+      (left, right) -> left.code().compareTo(right.code());
   private final Context context;
+  private final Metrics metrics;
+  private final Ledger iconLedger;
 
-  RealSendInteractor(Context context) {
+  RealSendInteractor(Context context, Metrics metrics) {
     this.context = context;
+    this.metrics = metrics;
+    this.iconLedger = new Ledger(context, "icons.ledger");
   }
 
   @Override
-  public boolean send(List<AppModel> selectedApps, PolarRequest request) throws Exception {
+  public SendResult send(
+      List<AppModel> selectedApps,
+      PolarRequest request,
+      CancellationToken token,
+      SendProgressReporter progress)
+      throws Exception {
+    final int cookie = IRTrace.beginAsync("send");
+    IRTrace.begin("RealSendInteractor.send");
+    try {
+      return doSend(selectedApps, request, token, progress);
+    } catch (CancellationException e) {
+      log(TAG, "Send cancelled.");
+      throw e;
+    } finally {
+      IRTrace.end();
+      IRTrace.endAsync("send", cookie);
+    }
+  }
+
+  private SendResult doSend(
+      List<AppModel> selectedApps,
+      PolarRequest request,
+      CancellationToken token,
+      SendProgressReporter progress)
+      throws Exception {
     PolarConfig config = request.config;
     log(TAG, "Preparing your request to send...");
     if (selectedApps.size() == 0) {
@@ -45,196 +88,572 @@ class RealSendInteractor implements SendInteractor {
           "You must either specify a recipient email or a request manager API key.");
     }
 
-    final File cacheFolder = new File(config.cacheFolder());
+    final File cacheFolder = FileUtil.cacheFolder(context, config);
     if (!cacheFolder.exists() && !cacheFolder.mkdirs()) {
       throw new Exception(
           "Unable to find or create cache folder: " + cacheFolder.getAbsolutePath());
     }
 
-    final ArrayList<File> filesToZip = new ArrayList<>();
     final boolean isRemote = !isEmpty(config.apiKey());
+    if (isRemote
+        && config.uploadChunkSize() > 0
+        && selectedApps.size() > config.uploadChunkSize()) {
+      if (!sendChunked(selectedApps, request, cacheFolder, token, progress)) {
+        log(TAG, "Request queued, it will be sent when the network is back.");
+        return SendResult.queued(selectedApps.size());
+      }
+      log(TAG, "Done!");
+      return SendResult.create(selectedApps.size(), true);
+    }
 
-    // Save app icons
-    log(TAG, "Saving icons...");
-
-    for (AppModel app : selectedApps) {
-      final Drawable drawable = app.getIcon(context);
-      if (!(drawable instanceof BitmapDrawable)) {
-        log(TAG, "Icon for " + app.code() + " didn't return a BitmapDrawable.");
-        continue;
+    final boolean listInManifest =
+        !isRemote && selectedApps.size() > config.emailListingLimit();
+    final RequestCache cache = new RequestCache(context, config);
+    String archiveKey = null;
+    if (!isRemote) {
+      // Email archives only depend on the selection, so the last one can be sent again as-is.
+      archiveKey = archiveKey(selectedApps, config, listInManifest);
+      final File cached = cache.archive(archiveKey);
+      if (cached != null) {
+        log(TAG, "Reusing the archive of an identical request: %s", cached);
+        IRTrace.begin("send:intent");
+        try {
+          launchIntent(selectedApps, request, cached, listInManifest);
+        } finally {
+          IRTrace.end();
+        }
+        request.requestedApps().record(selectedApps);
+        log(TAG, "Done!");
+        return SendResult.create(selectedApps.size(), false);
       }
-      final BitmapDrawable bDrawable = (BitmapDrawable) drawable;
-      final Bitmap icon = bDrawable.getBitmap();
-      final File file = new File(cacheFolder, String.format("%s.png", app.pkg()));
-      filesToZip.add(file);
+    }
+
+    final HashMap<String, String> iconHashes = new HashMap<>();
+    List<AppModel> appsToRender = selectedApps;
+    Map<String, String> ledgerKeys = null;
+    token.throwIfCancelled();
+    if (isRemote) {
+      IRTrace.begin("send:dedup");
       try {
-        FileUtil.writeIcon(file, icon);
-        log(TAG, "Saved icon: " + file.getAbsolutePath());
-      } catch (final Exception e) {
-        throw new Exception("Failed to save an icon: " + e.getMessage(), e);
+        ledgerKeys = ledgerKeys(selectedApps, config);
+        appsToRender = skipKnownIcons(selectedApps, ledgerKeys, request.transport(), iconHashes);
+      } finally {
+        IRTrace.end();
       }
     }
 
-    // Create appfilter
-    log(TAG, "Creating appfilter...");
+    final File zipFolder = isRemote ? cacheFolder : cache.archiveFolder(archiveKey);
+    final File zipFile = new File(zipFolder, archiveName(null));
+    final String appsJson;
+    progress.startIcons(appsToRender.size());
+    IRTrace.begin("send:zip");
+    try {
+      appsJson =
+          writeArchive(
+              zipFile,
+              selectedApps,
+              appsToRender,
+              request,
+              isRemote,
+              listInManifest,
+              isRemote ? iconHashes : null,
+              token,
+              progress);
+    } finally {
+      IRTrace.end();
+    }
+    if (ledgerKeys != null) {
+      rememberIconHashes(appsToRender, ledgerKeys, iconHashes);
+    }
+    final long zipBytes = zipFile.length();
+    progress.archived(selectedApps.size(), zipBytes);
 
-    StringBuilder xmlSb = null;
-    StringBuilder jsonSb = null;
-    if (!isRemote) {
-      xmlSb =
-          new StringBuilder(
-              "<resources>\n"
-                  + "    <iconback img1=\"iconback\" />\n"
-                  + "    <iconmask img1=\"iconmask\" />\n"
-                  + "    <iconupon img1=\"iconupon\" />\n"
-                  + "    <scale factor=\"1.0\" />");
+    // Past this point the request is handed off, to the outbox or to an email client.
+    if (token.isCancelled()) {
+      if (isRemote) {
+        //noinspection ResultOfMethodCallIgnored
+        zipFile.delete();
+      }
+      token.throwIfCancelled();
+    }
+    if (isRemote) {
+      final boolean delivered;
+      progress.startUploads(1);
+      IRTrace.begin("send:upload");
+      try {
+        delivered = deliver(request.outbox(), zipFile, appsJson, selectedApps.size());
+      } finally {
+        IRTrace.end();
+      }
+      if (!delivered) {
+        log(TAG, "Request queued, it will be sent when the network is back.");
+        return SendResult.queued(selectedApps.size());
+      }
+      progress.uploaded(zipBytes);
     } else {
-      jsonSb = new StringBuilder("{\n" + "    \"components\": [");
+      IRTrace.begin("send:intent");
+      try {
+        launchIntent(selectedApps, request, zipFile, listInManifest);
+      } finally {
+        IRTrace.end();
+      }
+      request.requestedApps().record(selectedApps);
+    }
+    log(TAG, "Done!");
+
+    IRTrace.begin("send:trim");
+    try {
+      cache.trim();
+    } finally {
+      IRTrace.end();
+    }
+    return SendResult.create(selectedApps.size(), isRemote);
+  }
+
+  /**
+   * Uploads the selection in chunks of {@link PolarConfig#uploadChunkSize()} apps. Each chunk is
+   * rendered, zipped and delivered through the outbox on its own, and its acknowledgement is
+   * persisted before moving on, so sending the same selection again after the server rejected a
+   * chunk skips chunks it already has. The next chunk is built while the previous one uploads on
+   * the background scheduler. Chunks are sliced from the selection sorted by component, so they
+   * hold the same apps on every attempt no matter how the selection was ordered. Returns false if
+   * a chunk failed because of the network, the rest are then queued and the outbox retries them.
+   */
+  private boolean sendChunked(
+      List<AppModel> selectedApps,
+      PolarRequest request,
+      File cacheFolder,
+      CancellationToken token,
+      SendProgressReporter reporter)
+      throws Exception {
+    final List<AppModel> sortedApps = new ArrayList<>(selectedApps);
+    Collections.sort(sortedApps, CODE_COMPARATOR);
+    final int chunkSize = request.config.uploadChunkSize();
+    final int count = (sortedApps.size() + chunkSize - 1) / chunkSize;
+    final UploadProgress progress =
+        UploadProgress.of(cacheFolder, sortedApps, chunkSize, request.config.apiKey());
+    final RequestOutbox outbox = request.outbox();
+    final int acknowledged = progress.acknowledged();
+    if (acknowledged > 0) {
+      log(
+          TAG,
+          "Resuming request %s after chunk %d of %d.",
+          progress.requestId,
+          acknowledged,
+          count);
     }
-    int index = 0;
+
+    reporter.startIcons(Math.max(0, sortedApps.size() - acknowledged * chunkSize));
+    FutureTask<Boolean> upload = null;
+    int uploading = -1;
+    long uploadingBytes = 0;
+    boolean queued = false;
+    try {
+      for (int index = acknowledged; index < count; index++) {
+        token.throwIfCancelled();
+        final UploadChunk chunk = UploadChunk.create(progress.requestId, index, count);
+        final List<AppModel> chunkApps =
+            sortedApps.subList(
+                index * chunkSize, Math.min(sortedApps.size(), (index + 1) * chunkSize));
+        final File zipFile = new File(cacheFolder, archiveName(chunk));
+        final String appsJson;
+        IRTrace.begin("send:chunk");
+        try {
+          appsJson =
+              writeArchive(
+                  zipFile, chunkApps, chunkApps, request, true, false, null, token, reporter);
+        } finally {
+          IRTrace.end();
+        }
+        final long zipBytes = zipFile.length();
+        reporter.archived(chunkApps.size(), zipBytes);
+
+        if (upload != null) {
+          final FutureTask<Boolean> previous = upload;
+          upload = null;
+          try {
+            queued =
+                !acknowledge(
+                    await(previous), progress, reporter, uploading, count, uploadingBytes);
+          } catch (Exception e) {
+            //noinspection ResultOfMethodCallIgnored
+            zipFile.delete();
+            throw e;
+          }
+        } else if (index == acknowledged) {
+          reporter.startUploads(count - acknowledged);
+        }
+        final File entry = outbox.enqueue(zipFile, appsJson, chunk);
+        if (queued) {
+          // The outbox already retries in the background, it picks this chunk up as well
+          continue;
+        }
+        upload = new FutureTask<>(() -> deliver(outbox, entry, chunkApps.size(), zipBytes));
+        uploading = index;
+        uploadingBytes = zipBytes;
+        request.schedulers.background().scheduleDirect(upload);
+      }
+
+      if (upload != null) {
+        final FutureTask<Boolean> last = upload;
+        upload = null;
+        queued = !acknowledge(await(last), progress, reporter, uploading, count, uploadingBytes);
+      }
+    } finally {
+      // When building the next chunk failed, the upload in flight is still acknowledged.
+      if (upload != null) {
+        try {
+          acknowledge(await(upload), progress, reporter, uploading, count, uploadingBytes);
+        } catch (Exception ignored) {
+        }
+      }
+    }
+    // Queued chunks are the outbox's now, a later send of the same selection starts over
+    progress.clear();
+    return !queued;
+  }
+
+  /** Persists the acknowledgement of a delivered chunk, returns whether it was delivered. */
+  private boolean acknowledge(
+      boolean delivered,
+      UploadProgress progress,
+      SendProgressReporter reporter,
+      int index,
+      int count,
+      long bytes)
+      throws Exception {
+    if (!delivered) {
+      log(TAG, "Chunk %d of %d queued.", index + 1, count);
+      return false;
+    }
+    progress.acknowledge(index + 1);
+    log(TAG, "Chunk %d of %d acknowledged.", index + 1, count);
+    reporter.uploaded(bytes);
+    return true;
+  }
+
+  private static <T> T await(FutureTask<T> upload) throws Exception {
+    try {
+      return upload.get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+
+  /**
+   * Asks the server which of the icons in the ledger it still needs. Apps whose icon it has are
+   * put into iconHashes and left out of the returned list, so they aren't rendered or uploaded.
+   */
+  private List<AppModel> skipKnownIcons(
+      List<AppModel> selectedApps,
+      Map<String, String> ledgerKeys,
+      RequestTransport transport,
+      Map<String, String> iconHashes) {
+    if (!(transport instanceof IconHashTransport)) {
+      return selectedApps;
+    }
+    final HashMap<String, String> known = new HashMap<>();
     for (AppModel app : selectedApps) {
-      final String name = app.name();
-      final String drawableName = IRUtils.drawableName(name);
-      if (xmlSb != null) {
-        xmlSb.append("\n\n    <!-- ");
-        xmlSb.append(name);
-        xmlSb.append(" -->\n");
-        xmlSb.append(
-            String.format(
-                "    <item\n"
-                    + "        component=\"ComponentInfo{%s}\"\n"
-                    + "        drawable=\"%s\" />",
-                app.code(), drawableName));
+      final String hash = iconLedger.get(ledgerKeys.get(app.code()));
+      if (hash != null) {
+        known.put(app.code(), hash);
       }
-      if (jsonSb != null) {
-        if (index > 0) jsonSb.append(",");
-        jsonSb.append("\n        {\n");
-        jsonSb.append(String.format("            \"%s\": \"%s\",\n", "name", name));
-        jsonSb.append(String.format("            \"%s\": \"%s\",\n", "pkg", app.pkg()));
-        jsonSb.append(String.format("            \"%s\": \"%s\",\n", "componentInfo", app.code()));
-        jsonSb.append(String.format("            \"%s\": \"%s\"\n", "drawable", drawableName));
-        jsonSb.append("        }");
+    }
+    if (known.isEmpty()) {
+      return selectedApps;
+    }
+
+    final Set<String> missing;
+    try {
+      missing = ((IconHashTransport) transport).missingIcons(new HashSet<>(known.values()));
+    } catch (Exception e) {
+      warn(TAG, "Unable to check which icons the server has: %s", e);
+      return selectedApps;
+    }
+    final ArrayList<AppModel> toRender = new ArrayList<>(selectedApps.size());
+    for (AppModel app : selectedApps) {
+      final String hash = known.get(app.code());
+      if (hash != null && !missing.contains(hash)) {
+        iconHashes.put(app.code(), hash);
+      } else {
+        toRender.add(app);
       }
-      log(TAG, "Added " + app.code() + " to the new generated appfilter file...");
-      index++;
     }
+    log(TAG, "The server already has %d of %d icons.", iconHashes.size(), selectedApps.size());
+    return toRender;
+  }
 
-    if (xmlSb != null) {
-      xmlSb.append("\n\n</resources>");
-      final File newAppFilter = new File(cacheFolder, "appfilter.xml");
-      filesToZip.add(newAppFilter);
+  /**
+   * Icons only change with the app or the export options, so they're identified by component,
+   * version code and {@link IconExport#signature}. Keyed by component, looked up once per send.
+   */
+  private Map<String, String> ledgerKeys(List<AppModel> selectedApps, PolarConfig config) {
+    final String signature = IconExport.signature(config);
+    final HashMap<String, String> keys = new HashMap<>(selectedApps.size());
+    for (AppModel app : selectedApps) {
+      keys.put(app.code(), app.code() + "@" + versionCode(app) + "/" + signature);
+    }
+    return keys;
+  }
+
+  private int versionCode(AppModel app) {
+    try {
+      return context.getPackageManager().getPackageInfo(app.pkg(), 0).versionCode;
+    } catch (PackageManager.NameNotFoundException e) {
+      return -1;
+    }
+  }
+
+  /** Identifies everything an email archive is generated from. */
+  private String archiveKey(List<AppModel> selectedApps, PolarConfig config, boolean listInManifest)
+      throws Exception {
+    final List<AppModel> sorted = new ArrayList<>(selectedApps);
+    Collections.sort(sorted, CODE_COMPARATOR);
+    final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+    digest.update((IconExport.signature(config) + "/" + listInManifest).getBytes("UTF-8"));
+    for (AppModel app : sorted) {
+      digest.update(
+          ("\n" + app.code() + "\t" + app.name() + "\t" + versionCode(app)).getBytes("UTF-8"));
+    }
+    return FileUtil.hex(digest.digest()).substring(0, 16);
+  }
+
+  /**
+   * Streams the request archive: icons through an {@link IconPipeline}, then the appfilter and
+   * the manifest. Returns the apps JSON for remote requests. A partial archive is deleted.
+   */
+  @Nullable
+  private String writeArchive(
+      File zipFile,
+      List<AppModel> selectedApps,
+      List<AppModel> appsToRender,
+      PolarRequest request,
+      boolean isRemote,
+      boolean listInManifest,
+      @Nullable Map<String, String> iconHashes,
+      CancellationToken token,
+      SendProgressReporter progress)
+      throws Exception {
+    final PolarConfig config = request.config;
+    log(TAG, "Creating ZIP...");
+    final long start = metrics.now();
+    final IconPipeline pipeline =
+        new IconPipeline(
+            context,
+            config,
+            request.schedulers.load(),
+            request.schedulers.encode(),
+            token,
+            progress,
+            metrics);
+    RequestArchive archive = null;
+    boolean done = false;
+    int entries;
+    final String appsJson;
+    try {
+      archive = new RequestArchive(new BufferedOutputStream(new FileOutputStream(zipFile)));
+      IRTrace.begin("send:icons");
       try {
-        writeAll(newAppFilter, xmlSb.toString());
-        log(TAG, "Generated appfilter saved to " + newAppFilter.getAbsolutePath());
-      } catch (final Exception e) {
-        throw new Exception(
-            "Failed to write your request appfilter.xml file: " + e.getMessage(), e);
+        entries = pipeline.run(appsToRender, archive, iconHashes);
+      } finally {
+        IRTrace.end();
+      }
+      metrics.recordDuration(
+          Phase.SEND_ICON_RENDER, pipeline.renderNanos(), appsToRender.size(), 0);
+      metrics.recordDuration(
+          Phase.SEND_ICON_ENCODE, pipeline.encodeNanos(), entries, pipeline.encodedBytes());
+
+      token.throwIfCancelled();
+      IRTrace.begin("send:appfilter");
+      try {
+        appsJson = writeAppFilter(selectedApps, archive, isRemote, iconHashes);
+      } finally {
+        IRTrace.end();
       }
-    }
-    if (jsonSb != null) {
-      jsonSb.append("\n    ]\n}");
       if (!isRemote) {
-        final File newAppFilter = new File(cacheFolder, "appfilter.json");
-        filesToZip.add(newAppFilter);
+        entries++;
+      }
+
+      if (listInManifest) {
+        IRTrace.begin("send:manifest");
         try {
-          writeAll(newAppFilter, jsonSb.toString());
-          log(TAG, "Generated appfilter JSON saved to: " + newAppFilter.getAbsolutePath());
-        } catch (final Exception e) {
-          throw new Exception(
-              "Failed to write your request appfilter.json file: " + e.getMessage(), e);
+          writeManifest(selectedApps, archive);
+        } finally {
+          IRTrace.end();
         }
+        entries++;
+      }
+
+      if (entries == 0) {
+        if (iconHashes == null || iconHashes.isEmpty()) {
+          throw new Exception("There are no PNG files to put into the ZIP archive.");
+        }
+        // The server has every icon already, the archive only carries the apps.
+        archive.putBytes("appfilter.json", appsJson.getBytes("UTF-8"));
+        entries++;
+      }
+      archive.close();
+      done = true;
+      log(TAG, "ZIP created at %s", zipFile);
+    } catch (final IOException e) {
+      throw new Exception("Failed to create the request ZIP file: " + e.getMessage(), e);
+    } finally {
+      if (!done) {
+        if (archive != null) {
+          closeQuietly(archive);
+        }
+        //noinspection ResultOfMethodCallIgnored
+        zipFile.delete();
       }
     }
+    metrics.record(Phase.SEND_ZIP, start, entries, metrics.enabled() ? zipFile.length() : 0);
+    return appsJson;
+  }
 
-    if (filesToZip.size() == 0) {
-      throw new Exception("There are no PNG files to put into the ZIP archive.");
+  /** Remembers the hashes of freshly rendered icons, so {@link #skipKnownIcons} finds them. */
+  private void rememberIconHashes(
+      List<AppModel> renderedApps, Map<String, String> ledgerKeys, Map<String, String> iconHashes) {
+    final HashMap<String, String> entries = new HashMap<>(renderedApps.size());
+    for (AppModel app : renderedApps) {
+      final String hash = iconHashes.get(app.code());
+      if (hash != null) {
+        entries.put(ledgerKeys.get(app.code()), hash);
+      }
     }
+    iconLedger.putAll(entries);
+  }
 
-    // Zip everything into an archive
-    log(TAG, "Creating ZIP...");
+  /** Writes appfilter.xml into the archive for email requests, returns the apps JSON otherwise. */
+  @Nullable
+  private String writeAppFilter(
+      List<AppModel> selectedApps,
+      RequestArchive archive,
+      boolean isRemote,
+      @Nullable Map<String, String> iconHashes)
+      throws Exception {
+    log(TAG, "Creating appfilter...");
+    final long start = metrics.now();
+    final StringWriter writer = new StringWriter(selectedApps.size() * 256);
+    if (isRemote) {
+      AppFilterWriter.writeJson(writer, selectedApps, iconHashes);
+      final String appsJson = writer.toString();
+      metrics.record(Phase.SEND_APPFILTER, start, selectedApps.size(), appsJson.length());
+      return appsJson;
+    }
 
-    final SimpleDateFormat df = new SimpleDateFormat("yyyy.MM.dd", Locale.getDefault());
-    final File zipFile =
-        new File(cacheFolder, String.format("IconRequest-%s.zip", df.format(new Date())));
+    final byte[] appFilter;
     try {
-      zip(zipFile, filesToZip.toArray(new File[filesToZip.size()]));
-      log(TAG, "ZIP created at " + zipFile.getAbsolutePath());
+      AppFilterWriter.writeXml(writer, selectedApps);
+      appFilter = writer.toString().getBytes("UTF-8");
+      archive.putBytes("appfilter.xml", appFilter);
+      log(TAG, "Generated appfilter added to the archive.");
     } catch (final Exception e) {
-      throw new Exception("Failed to create the request ZIP file: " + e.getMessage(), e);
+      throw new Exception(
+          "Failed to write your request appfilter.xml file: " + e.getMessage(), e);
     }
+    metrics.record(Phase.SEND_APPFILTER, start, selectedApps.size(), appFilter.length);
+    return null;
+  }
 
-    // Cleanup files
-    log(TAG, "Cleaning up files...");
-    final File[] files = cacheFolder.listFiles();
-    for (File fi : files) {
-      if (!fi.isDirectory()
-          && (fi.getName().endsWith(".png")
-              || fi.getName().endsWith(".xml")
-              || fi.getName().endsWith(".json"))) {
-        if (fi.delete()) {
-          log(TAG, "Deleted: " + fi.getAbsolutePath());
-        }
-      }
+  private void writeManifest(List<AppModel> selectedApps, RequestArchive archive)
+      throws Exception {
+    try {
+      archive.putBytes(MANIFEST_NAME, getManifest(selectedApps).getBytes("UTF-8"));
+      log(TAG, "Request manifest added to the archive.");
+    } catch (final Exception e) {
+      throw new Exception(
+          "Failed to write your request " + MANIFEST_NAME + " file: " + e.getMessage(), e);
     }
+  }
 
-    // Send request to the backend server
-    if (isRemote) {
-      Bridge.config()
-          .host(RM_HOST)
-          .defaultHeader("TokenID", config.apiKey())
-          .defaultHeader("Accept", "application/json")
-          .defaultHeader("User-Agent", "afollestad/icon-request")
-          .validators(new RemoteValidator());
-      try {
-        MultipartForm form = new MultipartForm();
-        form.add("archive", zipFile);
-        form.add("apps", new JSONObject(jsonSb.toString()).toString());
-        post("/v1/request").throwIfNotSuccess().body(form).request();
-        log(TAG, "Request uploaded to the server!");
-      } catch (Exception e) {
-        throw new Exception("Failed to send icons to the backend: " + e.getMessage(), e);
-      }
+  private static String archiveName(@Nullable UploadChunk chunk) {
+    final SimpleDateFormat df = new SimpleDateFormat("yyyy.MM.dd", Locale.getDefault());
+    if (chunk == null) {
+      return String.format("IconRequest-%s.zip", df.format(new Date()));
     }
+    return String.format(
+        Locale.US,
+        "IconRequest-%s-%s-%d.zip",
+        df.format(new Date()),
+        chunk.requestId(),
+        chunk.index() + 1);
+  }
 
-    if (!isRemote) {
-      // Send email intent
-      log(TAG, "Launching intent!");
-      final Uri zipUri = Uri.fromFile(zipFile);
-      final Uri newUri = request.uriTransformer.apply(zipUri);
-      if (!zipUri.toString().equals(newUri.toString())) {
-        log(TAG, "Transformed URI %s -> %s", zipUri.toString(), newUri.toString());
+  /**
+   * Moves the request into the outbox and delivers it along with anything else pending. Returns
+   * false if the upload failed because of the network, the outbox retries it later.
+   */
+  private boolean deliver(RequestOutbox outbox, File zipFile, String appsJson, int appCount)
+      throws Exception {
+    final long bytes = metrics.enabled() ? zipFile.length() : 0;
+    return deliver(outbox, outbox.enqueue(zipFile, appsJson, null), appCount, bytes);
+  }
+
+  private boolean deliver(RequestOutbox outbox, File entry, int appCount, long bytes)
+      throws Exception {
+    final long start = metrics.now();
+    final boolean delivered;
+    try {
+      delivered = outbox.deliver(entry);
+      if (delivered) {
+        log(TAG, "Request uploaded to the server!");
       }
-      final Intent emailIntent =
-          new Intent(Intent.ACTION_SEND)
-              .putExtra(Intent.EXTRA_EMAIL, new String[] {config.emailRecipient()})
-              .putExtra(Intent.EXTRA_SUBJECT, config.emailSubject())
-              .putExtra(Intent.EXTRA_TEXT, Html.fromHtml(getEmailBody(selectedApps, config)))
-              .putExtra(Intent.EXTRA_STREAM, newUri)
-              .setType("application/zip");
-      context.startActivity(
-          Intent.createChooser(emailIntent, context.getString(R.string.send_using)));
+    } catch (Exception e) {
+      throw new Exception("Failed to send icons to the backend: " + e.getMessage(), e);
     }
-    log(TAG, "Done!");
+    if (delivered) {
+      metrics.record(Phase.SEND_UPLOAD, start, appCount, bytes);
+    }
+    return delivered;
+  }
 
-    return isRemote;
+  private void launchIntent(
+      List<AppModel> selectedApps, PolarRequest request, File zipFile, boolean listInManifest)
+      throws Exception {
+    final PolarConfig config = request.config;
+    log(TAG, "Launching intent!");
+    final Uri zipUri = Uri.fromFile(zipFile);
+    final Uri newUri = request.uriTransformer.apply(zipUri);
+    if (!zipUri.toString().equals(newUri.toString())) {
+      log(TAG, "Transformed URI %s -> %s", zipUri, newUri);
+    }
+    final Intent emailIntent =
+        new Intent(Intent.ACTION_SEND)
+            .putExtra(Intent.EXTRA_EMAIL, new String[] {config.emailRecipient()})
+            .putExtra(Intent.EXTRA_SUBJECT, config.emailSubject())
+            .putExtra(
+                Intent.EXTRA_TEXT,
+                Html.fromHtml(getEmailBody(selectedApps, config, listInManifest)))
+            .putExtra(Intent.EXTRA_STREAM, newUri)
+            .setType("application/zip");
+    context.startActivity(
+        Intent.createChooser(emailIntent, context.getString(R.string.send_using)));
   }
 
-  private String getEmailBody(List<AppModel> selectedApps, PolarConfig config) {
+  private String getEmailBody(
+      List<AppModel> selectedApps, PolarConfig config, boolean listInManifest) {
     StringBuilder sb = new StringBuilder();
     if (!isEmpty(config.emailHeader())) {
       sb.append(config.emailHeader().replace("\n", "<br/>"));
       sb.append("<br/><br/>");
     }
 
-    for (int i = 0; i < selectedApps.size(); i++) {
-      if (i > 0) {
-        sb.append("<br/><br/>");
+    if (listInManifest) {
+      sb.append("Requested <b>")
+          .append(selectedApps.size())
+          .append("</b> apps, they are listed in ")
+          .append(MANIFEST_NAME)
+          .append(" inside of the attached archive.");
+    } else {
+      for (int i = 0; i < selectedApps.size(); i++) {
+        if (i > 0) {
+          sb.append("<br/><br/>");
+        }
+        final AppModel app = selectedApps.get(i);
+        sb.append("Name: <b>").append(app.name()).append("</b><br/>");
+        sb.append("Code: <b>").append(app.code()).append("</b><br/>");
+        sb.append("Link: ").append(PLAY_LINK).append(app.pkg()).append("<br/>");
       }
-      final AppModel app = selectedApps.get(i);
-      sb.append(String.format("Name: <b>%s</b><br/>", app.name()));
-      sb.append(String.format("Code: <b>%s</b><br/>", app.code()));
-      sb.append(
-          String.format("Link: https://play.google.com/store/apps/details?id=%s<br/>", app.pkg()));
     }
 
     if (config.includeDeviceInfo()) {
@@ -257,4 +676,25 @@ class RealSendInteractor implements SendInteractor {
     }
     return sb.toString();
   }
+
+  private static String getManifest(List<AppModel> selectedApps) {
+    StringBuilder sb = new StringBuilder(selectedApps.size() * 128);
+    sb.append("name,component,link\n");
+    for (AppModel app : selectedApps) {
+      appendCsv(sb, app.name()).append(',');
+      appendCsv(sb, app.code()).append(',');
+      sb.append(PLAY_LINK).append(app.pkg()).append('\n');
+    }
+    return sb.toString();
+  }
+
+  private static StringBuilder appendCsv(StringBuilder sb, String value) {
+    if (value.indexOf(',') == -1
+        && value.indexOf('"') == -1
+        && value.indexOf('\n') == -1
+        && value.indexOf('\r') == -1) {
+      return sb.append(value);
+    }
+    return sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+  }
 }
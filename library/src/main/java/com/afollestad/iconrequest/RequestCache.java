@@ -0,0 +1,158 @@
+package com.afollestad.iconrequest;
+
+import static com.afollestad.iconrequest.FileUtil.wipe;
+import static com.afollestad.iconrequest.IRLog.log;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import io.reactivex.Scheduler;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages the cache folder within {@link PolarConfig#cacheMaxBytes()} and {@link
+ * PolarConfig#cacheMaxAgeDays()}. Email archives are kept per selection in an archives folder, so
+ * sending the same selection again reuses them, and the least recently used ones are evicted. The
+ * outbox is never touched.
+ */
+class RequestCache {
+
+  private static final String TAG = RequestCache.class.getSimpleName();
+  private static final String ARCHIVES = "archives";
+  // Loose files younger than this may belong to a send in progress.
+  private static final long LEFTOVER_AGE_MS = TimeUnit.HOURS.toMillis(1);
+  private static final Object LOCK = new Object();
+
+  private final File folder;
+  private final long maxBytes;
+  private final long maxAgeMillis;
+
+  RequestCache(Context context, PolarConfig config) {
+    this.folder = FileUtil.cacheFolder(context, config);
+    this.maxBytes = config.cacheMaxBytes();
+    this.maxAgeMillis = TimeUnit.DAYS.toMillis(config.cacheMaxAgeDays());
+  }
+
+  /** Trims the cache on the given scheduler, so it never blocks the calling thread. */
+  static void trimInBackground(Context context, PolarConfig config, Scheduler scheduler) {
+    scheduler.scheduleDirect(() -> new RequestCache(context, config).trim());
+  }
+
+  /** The archive previously written for this selection key, marked as used, or null. */
+  @Nullable
+  File archive(String key) {
+    final File[] files = new File(new File(folder, ARCHIVES), key).listFiles();
+    if (files == null) {
+      return null;
+    }
+    for (File file : files) {
+      if (file.getName().endsWith(".zip")) {
+        //noinspection ResultOfMethodCallIgnored
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+      }
+    }
+    return null;
+  }
+
+  /** An empty folder to write the archive for this selection key into. */
+  File archiveFolder(String key) throws Exception {
+    final File archiveFolder = new File(new File(folder, ARCHIVES), key);
+    wipe(archiveFolder);
+    if (!archiveFolder.mkdirs()) {
+      throw new Exception("Unable to create " + archiveFolder.getAbsolutePath());
+    }
+    return archiveFolder;
+  }
+
+  void trim() {
+    synchronized (LOCK) {
+      trimLocked();
+    }
+  }
+
+  private void trimLocked() {
+    final File[] files = folder.listFiles();
+    if (files == null) {
+      return;
+    }
+    final long now = System.currentTimeMillis();
+    final List<Entry> entries = new ArrayList<>();
+    int deleted = 0;
+
+    for (File file : files) {
+      final String name = file.getName();
+      if (file.isDirectory()) {
+        if (ARCHIVES.equals(name)) {
+          final File[] archives = file.listFiles();
+          if (archives != null) {
+            for (File archive : archives) {
+              entries.add(new Entry(archive));
+            }
+          }
+        } else if (!RequestOutbox.FOLDER_NAME.equals(name)) {
+          deleted += wipe(file);
+        }
+      } else if (name.endsWith(".zip")) {
+        // Archives from older versions, or chunks of an upload which was interrupted
+        entries.add(new Entry(file));
+      } else if (name.endsWith(".progress")) {
+        if (maxAgeMillis > 0 && now - file.lastModified() > maxAgeMillis) {
+          deleted += wipe(file);
+        }
+      } else if (now - file.lastModified() > LEFTOVER_AGE_MS) {
+        deleted += wipe(file);
+      }
+    }
+
+    // Most recently used first, everything past the age or size budget goes. The latest archive
+    // is always kept, an email app may still be reading it. Long.compare is API 19.
+    Collections.sort(
+        entries,
+        (left, right) ->
+            left.lastUsed < right.lastUsed ? 1 : left.lastUsed > right.lastUsed ? -1 : 0);
+    long bytes = 0;
+    for (int i = 0; i < entries.size(); i++) {
+      final Entry entry = entries.get(i);
+      bytes += entry.bytes;
+      if (i == 0) {
+        continue;
+      }
+      if ((maxAgeMillis > 0 && now - entry.lastUsed > maxAgeMillis)
+          || (maxBytes > 0 && bytes > maxBytes)) {
+        deleted += wipe(entry.file);
+      }
+    }
+    if (deleted > 0) {
+      log(TAG, "Evicted %d files from %s", deleted, folder);
+    }
+  }
+
+  private static class Entry {
+
+    final File file;
+    final long lastUsed;
+    final long bytes;
+
+    Entry(File file) {
+      this.file = file;
+      long lastUsed = file.lastModified();
+      long bytes = file.length();
+      if (file.isDirectory()) {
+        bytes = 0;
+        final File[] contents = file.listFiles();
+        if (contents != null) {
+          for (File content : contents) {
+            lastUsed = Math.max(lastUsed, content.lastModified());
+            bytes += content.length();
+          }
+        }
+      }
+      this.lastUsed = lastUsed;
+      this.bytes = bytes;
+    }
+  }
+}
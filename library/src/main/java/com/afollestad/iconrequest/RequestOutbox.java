@@ -0,0 +1,438 @@
+package com.afollestad.iconrequest;
+
+import static com.afollestad.iconrequest.FileUtil.closeQuietly;
+import static com.afollestad.iconrequest.FileUtil.writeAll;
+import static com.afollestad.iconrequest.IRLog.log;
+import static com.afollestad.iconrequest.IRLog.warn;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.afollestad.iconrequest.DeliveryState.Status;
+import com.afollestad.iconrequest.core.AppFilterJsonParser;
+import com.afollestad.iconrequest.core.AppFilterWriter;
+import com.afollestad.iconrequest.core.RequestArchive;
+import com.afollestad.iconrequest.core.RequestedApp;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Remote requests are stored here before they're uploaded, so they survive network failures and
+ * process death. Pending requests are coalesced into a single upload, while the chunks of a request
+ * split up by {@link PolarConfig#uploadChunkSize()} are uploaded one by one. Network failures and
+ * {@link RetryableException}s are retried with exponential backoff and jitter, a request the
+ * server rejects is dropped on its own.
+ */
+class RequestOutbox {
+
+  private static final String TAG = RequestOutbox.class.getSimpleName();
+  static final String FOLDER_NAME = "outbox";
+  private static final long BASE_DELAY_MS = 5_000;
+  private static final long MAX_DELAY_MS = 30 * 60_000;
+
+  private final Context context;
+  private final PolarRequest request;
+  private final Subject<DeliveryState> subject;
+  private final Random random;
+  private int attempts;
+  private int sequence;
+  private Disposable retry;
+
+  RequestOutbox(Context context, PolarRequest request) {
+    this.context = context;
+    this.request = request;
+    this.subject = PublishSubject.<DeliveryState>create().toSerialized();
+    this.random = new Random();
+  }
+
+  Observable<DeliveryState> observe() {
+    return subject;
+  }
+
+  private File folder() {
+    return new File(FileUtil.cacheFolder(context, request.config), FOLDER_NAME);
+  }
+
+  /**
+   * Moves a prepared archive and its apps JSON into the outbox, returning the queued archive. A
+   * chunk is kept apart from other requests, and uploaded with its chunk fields.
+   */
+  synchronized File enqueue(
+      @NonNull File archive, @NonNull String appsJson, @Nullable UploadChunk chunk)
+      throws Exception {
+    final File folder = folder();
+    if (!folder.exists() && !folder.mkdirs()) {
+      throw new Exception("Unable to create the outbox folder: " + folder.getAbsolutePath());
+    }
+    // Names sort in the order requests were queued, so chunks go out in order
+    final String id =
+        String.format(
+            Locale.US,
+            "%d-%06d-%s",
+            System.currentTimeMillis(),
+            sequence++ % 1_000_000,
+            Integer.toHexString(random.nextInt()));
+    final File json = new File(folder, id + ".json");
+    writeAll(json, appsJson);
+    final File chunkFile = chunk(new File(folder, id + ".zip"));
+    if (chunk != null) {
+      writeAll(chunkFile, chunk.requestId() + "\t" + chunk.index() + "\t" + chunk.count());
+    }
+    final File zip = new File(folder, id + ".zip");
+    if (!archive.renameTo(zip)) {
+      //noinspection ResultOfMethodCallIgnored
+      json.delete();
+      //noinspection ResultOfMethodCallIgnored
+      chunkFile.delete();
+      throw new Exception("Unable to move " + archive.getName() + " into the outbox.");
+    }
+    log(TAG, "Queued %s", zip.getName());
+    subject.onNext(DeliveryState.create(Status.QUEUED, pending().size()));
+    return zip;
+  }
+
+  /** Delivers every pending request, see {@link #deliver(File)}. */
+  synchronized boolean deliver() throws Exception {
+    return deliver(null);
+  }
+
+  /**
+   * Uploads every pending request: requests as one, chunks one by one. Returns false if that
+   * failed because of the network or the server was temporarily unable to take it, in which case
+   * a retry is scheduled and whatever wasn't uploaded stays pending. If an entry is given, the
+   * result is whether that one was delivered. A request the server rejects is dropped without
+   * taking others with it, and its error is thrown once the rest were sent, if it was the given
+   * entry or no entry was given.
+   */
+  synchronized boolean deliver(@Nullable File entry) throws Exception {
+    cancelRetry();
+    final List<File> pending = pending();
+    if (pending.isEmpty()) {
+      return true;
+    }
+    subject.onNext(DeliveryState.create(Status.SENDING, pending.size()));
+
+    final List<File> requests = new ArrayList<>(pending.size());
+    final List<File> chunks = new ArrayList<>(0);
+    for (File zip : pending) {
+      (chunk(zip).exists() ? chunks : requests).add(zip);
+    }
+    final LinkedHashMap<File, Exception> rejected = new LinkedHashMap<>();
+    try {
+      if (!requests.isEmpty()) {
+        try {
+          send(requests);
+        } catch (IOException e) {
+          throw e;
+        } catch (Exception e) {
+          if (requests.size() == 1) {
+            reject(requests.get(0), e, rejected);
+          } else {
+            // One bad request shouldn't take the others down with it
+            warn(TAG, "Pending requests were rejected together, sending them one by one: %s", e);
+            for (File zip : requests) {
+              sendAlone(zip, rejected);
+            }
+          }
+        }
+      }
+      for (File zip : chunks) {
+        sendAlone(zip, rejected);
+      }
+    } catch (IOException e) {
+      // Including RetryableException
+      attempts++;
+      final long delay = backoff(attempts);
+      warn(TAG, "Delivery attempt %d failed, retrying in %d ms: %s", attempts, delay, e);
+      subject.onNext(DeliveryState.retry(pending().size(), delay, e));
+      scheduleRetry(delay);
+      if (entry == null || entry.exists()) {
+        return false;
+      }
+      return throwIfRejected(entry, rejected);
+    }
+
+    attempts = 0;
+    if (!rejected.isEmpty()) {
+      final Exception error = rejected.values().iterator().next();
+      subject.onNext(DeliveryState.failed(pending().size(), error));
+      if (entry == null) {
+        throw error;
+      }
+      return throwIfRejected(entry, rejected);
+    }
+    subject.onNext(DeliveryState.create(Status.DELIVERED, 0));
+    return true;
+  }
+
+  private static boolean throwIfRejected(File entry, LinkedHashMap<File, Exception> rejected)
+      throws Exception {
+    final Exception error = rejected.get(entry);
+    if (error != null) {
+      throw error;
+    }
+    return true;
+  }
+
+  /** Sends a single pending request or chunk, noting it down if it was rejected. */
+  private void sendAlone(File zip, LinkedHashMap<File, Exception> rejected) throws IOException {
+    try {
+      send(Collections.singletonList(zip));
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      reject(zip, e, rejected);
+    }
+  }
+
+  private void reject(File zip, Exception error, LinkedHashMap<File, Exception> rejected) {
+    warn(TAG, "Dropping rejected request %s: %s", zip.getName(), error);
+    delete(Collections.singletonList(zip));
+    rejected.put(zip, error);
+  }
+
+  /**
+   * Uploads the pending requests as one, and removes them from the outbox once the server took
+   * them. IOExceptions are from the transport, a request which can't be read is rejected.
+   */
+  private void send(List<File> batch) throws Exception {
+    File archive = batch.get(0);
+    final String appsJson;
+    final UploadChunk chunk;
+    try {
+      if (batch.size() == 1) {
+        appsJson = FileUtil.readAll(json(archive));
+        chunk = readChunk(archive);
+      } else {
+        final File merged = new File(folder(), "merged.tmp");
+        archive = merged;
+        appsJson = merge(batch, merged);
+        chunk = null;
+      }
+    } catch (Exception e) {
+      // A pending request that can't be read would otherwise block the outbox forever.
+      throw new Exception("Unable to read pending requests: " + e.getMessage(), e);
+    }
+
+    try {
+      request.transport().send(archive, appsJson, chunk);
+    } finally {
+      if (batch.size() > 1) {
+        //noinspection ResultOfMethodCallIgnored
+        archive.delete();
+      }
+    }
+    delete(batch);
+    log(TAG, "Delivered %d pending request(s).", batch.size());
+    recordDelivered(appsJson);
+  }
+
+  @Nullable
+  private static UploadChunk readChunk(File zip) throws Exception {
+    final File file = chunk(zip);
+    if (!file.exists()) {
+      return null;
+    }
+    final String[] fields = FileUtil.readAll(file).trim().split("\t");
+    return UploadChunk.create(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+  }
+
+  /** Persists the delivered apps as requested, whether they were sent right away or retried. */
+  private void recordDelivered(String appsJson) {
+    final ArrayList<PendingApp> apps = new ArrayList<>();
+    try {
+      AppFilterJsonParser.parse(
+          new StringReader(appsJson),
+          (name, pkg, component, drawable) -> apps.add(new PendingApp(name, component, pkg)));
+    } catch (Exception e) {
+      warn(TAG, "Unable to read the delivered apps: %s", e);
+    }
+    request.requestedApps().record(apps);
+  }
+
+  /** Schedules a delivery in the background if anything is pending, e.g. after a restart. */
+  synchronized void resume() {
+    if (retry == null || retry.isDisposed()) {
+      scheduleRetry(0);
+    }
+  }
+
+  private void scheduleRetry(long delayMillis) {
+    cancelRetry();
+    retry =
+        Observable.timer(delayMillis, TimeUnit.MILLISECONDS, request.schedulers.background())
+            .subscribe(
+                tick -> {
+                  try {
+                    deliver();
+                  } catch (Exception e) {
+                    warn(TAG, "Pending requests were rejected: %s", e);
+                  }
+                },
+                error -> warn(TAG, "Unable to deliver pending requests: %s", error));
+  }
+
+  private void cancelRetry() {
+    if (retry != null) {
+      retry.dispose();
+      retry = null;
+    }
+  }
+
+  /** Exponential backoff with +/- 50% jitter, so many devices don't retry in lockstep. */
+  private long backoff(int attempt) {
+    final long exponential = BASE_DELAY_MS << Math.min(attempt - 1, 16);
+    final long capped = Math.min(exponential, MAX_DELAY_MS);
+    return capped / 2 + (long) (random.nextDouble() * capped);
+  }
+
+  private List<File> pending() {
+    final File[] zips = folder().listFiles((dir, name) -> name.endsWith(".zip"));
+    if (zips == null) {
+      return new ArrayList<>(0);
+    }
+    Arrays.sort(zips);
+    final List<File> pending = new ArrayList<>(zips.length);
+    for (File zip : zips) {
+      if (json(zip).exists()) {
+        pending.add(zip);
+      }
+    }
+    return pending;
+  }
+
+  private static File json(File zip) {
+    final String name = zip.getName();
+    return new File(zip.getParentFile(), name.substring(0, name.length() - 4) + ".json");
+  }
+
+  private static File chunk(File zip) {
+    final String name = zip.getName();
+    return new File(zip.getParentFile(), name.substring(0, name.length() - 4) + ".chunk");
+  }
+
+  @SuppressWarnings("ResultOfMethodCallIgnored")
+  private static void delete(List<File> pending) {
+    for (File zip : pending) {
+      zip.delete();
+      json(zip).delete();
+      chunk(zip).delete();
+    }
+  }
+
+  /** Writes one archive holding every pending request, returning their combined apps JSON. */
+  private static String merge(List<File> pending, File target) throws Exception {
+    final LinkedHashMap<String, PendingApp> apps = new LinkedHashMap<>();
+    final HashMap<String, String> iconHashes = new HashMap<>();
+    final HashSet<String> entries = new HashSet<>();
+    RequestArchive archive = null;
+    try {
+      archive = new RequestArchive(new BufferedOutputStream(new FileOutputStream(target)));
+      for (File file : pending) {
+        InputStream is = new FileInputStream(json(file));
+        try {
+          AppFilterJsonParser.parse(
+              is,
+              new AppFilterJsonParser.IconHashHandler() {
+                @Override
+                public void onIconHash(String component, String iconHash) {
+                  if (!iconHashes.containsKey(component)) {
+                    iconHashes.put(component, iconHash);
+                  }
+                }
+
+                @Override
+                public void onComponent(
+                    String name, String pkg, String component, String drawable) {
+                  if (!apps.containsKey(component)) {
+                    apps.put(component, new PendingApp(name, component, pkg));
+                  }
+                }
+              });
+        } finally {
+          closeQuietly(is);
+        }
+        final ZipFile zip = new ZipFile(file);
+        try {
+          final Enumeration<? extends ZipEntry> it = zip.entries();
+          while (it.hasMoreElements()) {
+            final ZipEntry entry = it.nextElement();
+            if (entries.add(entry.getName())) {
+              final InputStream entryStream = zip.getInputStream(entry);
+              try {
+                archive.putStream(entry.getName(), entryStream);
+              } finally {
+                closeQuietly(entryStream);
+              }
+            }
+          }
+        } finally {
+          // ZipFile only implements Closeable from API 19.
+          try {
+            zip.close();
+          } catch (IOException ignored) {
+          }
+        }
+      }
+      archive.close();
+    } catch (Exception e) {
+      closeQuietly(archive);
+      throw e;
+    }
+
+    final StringWriter json = new StringWriter(apps.size() * 256);
+    AppFilterWriter.writeJson(json, new ArrayList<>(apps.values()), iconHashes);
+    return json.toString();
+  }
+
+  private static class PendingApp implements RequestedApp {
+
+    private final String name;
+    private final String code;
+    private final String pkg;
+
+    PendingApp(String name, String code, String pkg) {
+      this.name = name != null ? name : code;
+      this.code = code;
+      this.pkg = pkg != null ? pkg : code.substring(0, Math.max(0, code.indexOf('/')));
+    }
+
+    @Override
+    public String name() {
+      return name;
+    }
+
+    @Override
+    public String code() {
+      return code;
+    }
+
+    @Override
+    public String pkg() {
+      return pkg;
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package com.afollestad.iconrequest;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.io.File;
+
+/**
+ * Delivers remote requests to the request manager. The default implementation is created from
+ * {@link PolarConfig#apiHost()} and {@link PolarConfig#apiKey()}, pass your own to {@link
+ * PolarRequest#transport(RequestTransport)} to share an existing HTTP client.
+ */
+public interface RequestTransport {
+
+  /**
+   * Uploads a request archive along with the JSON description of its apps, returning normally
+   * only once the server acknowledged it. The chunk is null unless the request is split up, see
+   * {@link PolarConfig#uploadChunkSize()}.
+   */
+  void send(@NonNull File archive, @NonNull String appsJson, @Nullable UploadChunk chunk)
+      throws Exception;
+}
@@ -0,0 +1,76 @@
+package com.afollestad.iconrequest;
+
+import android.content.Context;
+import com.afollestad.iconrequest.core.RequestedApp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which components were sent and when, so {@link AppModel#requested()} survives process
+ * death. Backed by an append-only {@link Ledger} in the app's files folder. Remote requests are
+ * only recorded once the outbox delivered them.
+ */
+class RequestedApps {
+
+  private final Ledger ledger;
+
+  RequestedApps(Context context) {
+    this.ledger = new Ledger(context, "requested.ledger");
+  }
+
+  void record(List<? extends RequestedApp> apps) {
+    if (apps.isEmpty()) {
+      return;
+    }
+    final String now = Long.toString(System.currentTimeMillis());
+    final HashMap<String, String> entries = new HashMap<>(apps.size() * 2);
+    for (RequestedApp app : apps) {
+      entries.put(app.code(), now);
+    }
+    ledger.putAll(entries);
+  }
+
+  /**
+   * Marks apps which were sent within the expiry as requested, returning how many. Expired entries
+   * are dropped from the ledger, so it doesn't grow with every app ever requested.
+   */
+  int apply(List<AppModel> apps, int expiryDays) {
+    final Map<String, String> entries = ledger.entries();
+    if (entries.isEmpty()) {
+      return 0;
+    }
+    final long cutoff =
+        expiryDays > 0 ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(expiryDays) : 0;
+    if (cutoff > 0) {
+      final ArrayList<String> expired = new ArrayList<>();
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        if (parse(entry.getValue()) < cutoff) {
+          expired.add(entry.getKey());
+        }
+      }
+      ledger.removeAll(expired);
+    }
+    int count = 0;
+    for (int i = 0; i < apps.size(); i++) {
+      final AppModel app = apps.get(i);
+      final String sentAt = entries.get(app.code());
+      if (sentAt == null || app.requested() || parse(sentAt) < cutoff) {
+        continue;
+      }
+      apps.set(i, app.withRequested(true));
+      count++;
+    }
+    return count;
+  }
+
+  private static long parse(String timestamp) {
+    try {
+      return Long.parseLong(timestamp);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
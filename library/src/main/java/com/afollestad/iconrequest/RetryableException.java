@@ -0,0 +1,17 @@
+package com.afollestad.iconrequest;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a {@link RequestTransport} when the server couldn't take a request right now, like a
+ * 5xx, 408 or 429 response. The outbox keeps the request and retries it with backoff, the same as
+ * after a network failure. Any other exception drops the request it was thrown for.
+ */
+public class RetryableException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  public RetryableException(String message) {
+    super(message);
+  }
+}
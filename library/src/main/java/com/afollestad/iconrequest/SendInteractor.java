@@ -4,5 +4,14 @@ import java.util.List;
 
 interface SendInteractor {
 
-  boolean send(List<AppModel> selectedApps, PolarRequest request) throws Exception;
+  /**
+   * Sends the apps, reporting how far it got to progress. Stops with a CancellationException once
+   * token is cancelled.
+   */
+  SendResult send(
+      List<AppModel> selectedApps,
+      PolarRequest request,
+      CancellationToken token,
+      SendProgressReporter progress)
+      throws Exception;
 }
@@ -0,0 +1,35 @@
+package com.afollestad.iconrequest;
+
+import com.google.auto.value.AutoValue;
+
+/** How far a send has come, emitted by {@link PolarRequest#sendProgress()}. */
+@SuppressWarnings("WeakerAccess")
+@AutoValue
+public abstract class SendProgress {
+
+  public enum Stage {
+    /** Icons are rendered into the archive, items are icons and bytes are encoded bytes. */
+    ICONS,
+    /** An archive was completed, items are the apps in it and bytes is its size. */
+    ARCHIVE,
+    /** Archives are uploaded, items are archives and bytes are the uploaded bytes. */
+    UPLOADING
+  }
+
+  static SendProgress create(Stage stage, int done, int total, long bytes) {
+    return new AutoValue_SendProgress(stage, done, total, bytes);
+  }
+
+  public abstract Stage stage();
+
+  public abstract int done();
+
+  public abstract int total();
+
+  public abstract long bytes();
+
+  /** How much of the current stage is done, from 0 to 1. */
+  public float fraction() {
+    return total() > 0 ? (float) done() / total() : 0f;
+  }
+}
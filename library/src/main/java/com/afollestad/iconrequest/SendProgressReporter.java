@@ -0,0 +1,68 @@
+package com.afollestad.iconrequest;
+
+import com.afollestad.iconrequest.SendProgress.Stage;
+import io.reactivex.Observer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the progress of one send and reports it, at most once per {@link
+ * PolarConfig#progressIntervalMillis()}. Changes of stage and finished stages are always reported,
+ * so the throttling never hides where a send is.
+ */
+final class SendProgressReporter {
+
+  private final Observer<SendProgress> observer;
+  private final long intervalNanos;
+
+  private Stage lastStage;
+  private long lastReport;
+
+  private int iconsDone;
+  private int iconsTotal;
+  private long iconBytes;
+  private int uploadsDone;
+  private int uploadsTotal;
+  private long uploadedBytes;
+
+  SendProgressReporter(Observer<SendProgress> observer, int intervalMillis) {
+    this.observer = observer;
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+  }
+
+  void startIcons(int total) {
+    iconsTotal = total;
+    report(Stage.ICONS, iconsDone, iconsTotal, iconBytes);
+  }
+
+  /** An icon was written into the archive, or skipped with 0 bytes. */
+  void iconDone(long bytes) {
+    iconsDone++;
+    iconBytes += bytes;
+    report(Stage.ICONS, iconsDone, iconsTotal, iconBytes);
+  }
+
+  void archived(int apps, long bytes) {
+    report(Stage.ARCHIVE, apps, apps, bytes);
+  }
+
+  void startUploads(int total) {
+    uploadsTotal = total;
+    report(Stage.UPLOADING, uploadsDone, uploadsTotal, uploadedBytes);
+  }
+
+  void uploaded(long bytes) {
+    uploadsDone++;
+    uploadedBytes += bytes;
+    report(Stage.UPLOADING, uploadsDone, uploadsTotal, uploadedBytes);
+  }
+
+  private void report(Stage stage, int done, int total, long bytes) {
+    final long now = System.nanoTime();
+    if (stage == lastStage && done < total && now - lastReport < intervalNanos) {
+      return;
+    }
+    lastStage = stage;
+    lastReport = now;
+    observer.onNext(SendProgress.create(stage, done, total, bytes));
+  }
+}
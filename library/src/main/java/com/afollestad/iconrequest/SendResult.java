@@ -7,17 +7,27 @@ import com.google.auto.value.AutoValue;
 public abstract class SendResult {
 
   static SendResult create(int sentCount, boolean usedPolarRm) {
-    return new AutoValue_SendResult(sentCount, usedPolarRm, null);
+    return new AutoValue_SendResult(sentCount, usedPolarRm, false, null);
+  }
+
+  static SendResult queued(int sentCount) {
+    return new AutoValue_SendResult(sentCount, true, true, null);
   }
 
   static SendResult create(Exception e) {
-    return new AutoValue_SendResult(0, false, e);
+    return new AutoValue_SendResult(0, false, false, e);
   }
 
   public abstract int sentCount();
 
   public abstract boolean usedPolarRm();
 
+  /**
+   * True if the request couldn't be uploaded yet and is waiting in the outbox, see {@link
+   * PolarRequest#delivery()}.
+   */
+  public abstract boolean queued();
+
   public boolean success() {
     return error() == null;
   }
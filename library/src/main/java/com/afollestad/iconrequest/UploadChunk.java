@@ -0,0 +1,21 @@
+package com.afollestad.iconrequest;
+
+import com.google.auto.value.AutoValue;
+
+/** Identifies one part of a request which is uploaded in chunks. */
+@SuppressWarnings("WeakerAccess")
+@AutoValue
+public abstract class UploadChunk {
+
+  static UploadChunk create(String requestId, int index, int count) {
+    return new AutoValue_UploadChunk(requestId, index, count);
+  }
+
+  /** Stable for a selection, so the server can join chunks and spot re-sent ones. */
+  public abstract String requestId();
+
+  /** Zero-based. */
+  public abstract int index();
+
+  public abstract int count();
+}
@@ -0,0 +1,77 @@
+package com.afollestad.iconrequest;
+
+import static com.afollestad.iconrequest.FileUtil.writeAll;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Remembers how many chunks of a request the server acknowledged, in the cache folder, so a failed
+ * chunked upload resumes after the last acknowledged chunk instead of starting over.
+ */
+class UploadProgress {
+
+  private final File file;
+  final String requestId;
+
+  private UploadProgress(File cacheFolder, String requestId) {
+    this.requestId = requestId;
+    this.file = new File(cacheFolder, "upload-" + requestId + ".progress");
+  }
+
+  /**
+   * Progress for the selection, which is identified by its components, how it's sliced into chunks
+   * and the API key. The apps have to be sorted by component, the same order chunks are sliced in.
+   * A different chunk size starts a new request, acknowledged chunks of the old one would cover
+   * other apps.
+   */
+  static UploadProgress of(
+      File cacheFolder, List<AppModel> sortedApps, int chunkSize, String apiKey) throws Exception {
+    final int count = (sortedApps.size() + chunkSize - 1) / chunkSize;
+    final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+    digest.update(apiKey.getBytes("UTF-8"));
+    digest.update(("\n" + chunkSize + "x" + count).getBytes("UTF-8"));
+    for (AppModel app : sortedApps) {
+      digest.update((byte) '\n');
+      digest.update(app.code().getBytes("UTF-8"));
+    }
+    final byte[] hash = digest.digest();
+    final StringBuilder id = new StringBuilder(16);
+    for (int i = 0; i < 8; i++) {
+      id.append(String.format("%02x", hash[i]));
+    }
+    return new UploadProgress(cacheFolder, id.toString());
+  }
+
+  /** The number of chunks the server has acknowledged so far. */
+  int acknowledged() {
+    if (!file.exists()) {
+      return 0;
+    }
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new FileReader(file));
+      return Integer.parseInt(reader.readLine().trim());
+    } catch (Exception e) {
+      return 0;
+    } finally {
+      FileUtil.closeQuietly(reader);
+    }
+  }
+
+  void acknowledge(int count) throws Exception {
+    final File temp = new File(file.getPath() + ".tmp");
+    writeAll(temp, Integer.toString(count));
+    if (!temp.renameTo(file)) {
+      throw new Exception("Unable to save upload progress to " + file);
+    }
+  }
+
+  @SuppressWarnings("ResultOfMethodCallIgnored")
+  void clear() {
+    file.delete();
+  }
+}
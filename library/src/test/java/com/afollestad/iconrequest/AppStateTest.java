@@ -0,0 +1,165 @@
+package com.afollestad.iconrequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.afollestad.iconrequest.core.ComponentFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Selections, reloads and reads of {@link AppState} racing each other, the way select(), load() and
+ * send() do from different threads. No selection may be lost, and readers must never see the apps
+ * of one load with the filter of another.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class AppStateTest {
+
+  private static final int SELECTORS = 8;
+  private static final int APPS_PER_SELECTOR = 200;
+  private static final int APPS = SELECTORS * APPS_PER_SELECTOR;
+  private static final int READERS = 2;
+
+  @Test
+  public void concurrentSelectionsReloadsAndReads() throws Exception {
+    final AppState state = new AppState();
+    state.set(load(0, Collections.<AppModel>emptyList()));
+
+    final ExecutorService executor = Executors.newFixedThreadPool(SELECTORS + 1 + READERS);
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicBoolean selecting = new AtomicBoolean(true);
+    final List<Future<Integer>> selectors = new ArrayList<>(SELECTORS);
+    final List<Future<Integer>> others = new ArrayList<>(1 + READERS);
+    try {
+      for (int s = 0; s < SELECTORS; s++) {
+        final int first = s * APPS_PER_SELECTOR;
+        selectors.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  for (int i = first; i < first + APPS_PER_SELECTOR; i++) {
+                    select(state, code(i));
+                  }
+                  return APPS_PER_SELECTOR;
+                }));
+      }
+      // Like PolarRequest.finishLoad, fresh apps take over the selections of the current ones
+      others.add(
+          executor.submit(
+              () -> {
+                start.await();
+                int generation = 0;
+                while (selecting.get()) {
+                  final int next = ++generation;
+                  state.update(current -> load(next, current.apps));
+                }
+                return generation;
+              }));
+      for (int r = 0; r < READERS; r++) {
+        others.add(executor.submit(reader(state, start, selecting)));
+      }
+
+      start.countDown();
+      for (Future<Integer> selector : selectors) {
+        selector.get(60, TimeUnit.SECONDS);
+      }
+      selecting.set(false);
+      for (Future<Integer> other : others) {
+        assertTrue(other.get(60, TimeUnit.SECONDS) > 0);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    final AppState.Snapshot last = state.get();
+    assertConsistent(last);
+    int selected = 0;
+    for (AppModel app : last.apps) {
+      if (app.selected()) {
+        selected++;
+      }
+    }
+    assertEquals(APPS, selected);
+  }
+
+  private static Callable<Integer> reader(
+      AppState state, CountDownLatch start, AtomicBoolean selecting) {
+    return () -> {
+      start.await();
+      int reads = 0;
+      int lastSelected = 0;
+      while (selecting.get()) {
+        final AppState.Snapshot snapshot = state.get();
+        assertConsistent(snapshot);
+        int selected = 0;
+        for (AppModel app : snapshot.apps) {
+          if (app.selected()) {
+            selected++;
+          }
+        }
+        // Selections are only ever added, a reload must not drop any
+        assertTrue(selected + " < " + lastSelected, selected >= lastSelected);
+        lastSelected = selected;
+        reads++;
+      }
+      return reads;
+    };
+  }
+
+  private static void select(AppState state, String code) {
+    state.update(
+        current -> {
+          final ArrayList<AppModel> apps = current.copyApps();
+          for (int i = 0; i < apps.size(); i++) {
+            if (apps.get(i).code().equals(code)) {
+              apps.set(i, apps.get(i).withSelected(true));
+              return current.withApps(apps);
+            }
+          }
+          throw new AssertionError("Unable to find " + code);
+        });
+  }
+
+  /** A snapshot of every app whose filter and names are marked with the generation. */
+  private static AppState.Snapshot load(int generation, List<AppModel> previous) {
+    final ArrayList<AppModel> apps = new ArrayList<>(APPS);
+    for (int i = 0; i < APPS; i++) {
+      final String pkg = "com.example.app" + i;
+      apps.add(AppModel.create(generation + ":App " + i, code(i), pkg));
+    }
+    for (AppModel app : previous) {
+      if (app.selected()) {
+        final int index = Integer.parseInt(app.pkg().substring("com.example.app".length()));
+        apps.set(index, apps.get(index).withSelected(true));
+      }
+    }
+    return new AppState.Snapshot(
+        ComponentFilter.of(Collections.singleton("generation " + generation)), apps);
+  }
+
+  private static void assertConsistent(AppState.Snapshot snapshot) {
+    assertEquals(APPS, snapshot.apps.size());
+    final String generation = snapshot.filter.iterator().next().substring("generation ".length());
+    for (AppModel app : snapshot.apps) {
+      assertTrue(app.name(), app.name().startsWith(generation + ":"));
+    }
+  }
+
+  private static String code(int index) {
+    final String pkg = "com.example.app" + index;
+    return pkg + "/" + pkg + ".MainActivity";
+  }
+}
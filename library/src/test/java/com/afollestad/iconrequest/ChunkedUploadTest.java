@@ -0,0 +1,229 @@
+package com.afollestad.iconrequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.app.Application;
+import android.graphics.drawable.Drawable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Chunked uploads against a stand-in server which fails chunks part way through. Chunks that fail
+ * because of the network are left to the outbox. After a rejected chunk, a retry has to pick up
+ * after the last acknowledged chunk, with the same chunks, even if the selection comes in a
+ * different order.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE, shadows = ShadowIconPackageManager.class)
+public class ChunkedUploadTest {
+
+  private static final int APPS = 35;
+  private static final int CHUNK_SIZE = 10;
+  private static final String REJECTED = "{\"status\":\"error\",\"error\":\"Bad request\"}";
+  private static final Pattern COMPONENT = Pattern.compile("\"componentInfo\": \"([^\"]+)\"");
+
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
+  private StandInServer server;
+  private File cacheFolder;
+  private PolarRequest request;
+  private List<AppModel> apps;
+
+  @Before
+  public void setUp() throws Exception {
+    final Application app = RuntimeEnvironment.application;
+    server = new StandInServer();
+    cacheFolder = temp.newFolder("cache");
+    final Drawable icon = TestApps.icon(app, 48);
+    apps = new ArrayList<>(APPS);
+    for (int i = 0; i < APPS; i++) {
+      final String pkg = "com.example.app" + i;
+      // Labels sort the other way around than components
+      final String name = "App " + (APPS - i);
+      TestApps.install(app, pkg, name, icon);
+      apps.add(AppModel.create(name, TestApps.code(pkg), pkg));
+    }
+    request =
+        PolarRequest.make(app, null)
+            .schedulers(
+                PolarSchedulers.create()
+                    .load(Schedulers.trampoline())
+                    .send(Schedulers.trampoline())
+                    .main(Schedulers.trampoline())
+                    .encode(Schedulers.computation())
+                    // Chunks upload while the next one is built, retries are left to the test
+                    .background(Schedulers.single())
+                    .build())
+            .config(config(1));
+  }
+
+  private PolarConfig config(int chunkSizeFactor) {
+    return PolarConfig.create(RuntimeEnvironment.application)
+        .cacheFolder(cacheFolder.getAbsolutePath())
+        .uploadChunkSize(CHUNK_SIZE * chunkSizeFactor)
+        .apiHost(server.url())
+        .apiKey("key")
+        .build();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void queuesTheRestAfterDroppedConnection() throws Exception {
+    server.respond(200, StandInServer.SUCCESS).disconnect();
+    assertTrue(send(apps).queued());
+    assertEquals(2, server.requests().size());
+
+    assertTrue(request.outbox().deliver());
+
+    final List<StandInServer.Request> requests = server.requests();
+    assertEquals(5, requests.size());
+    assertEquals("1/4", requests.get(0).chunk);
+    assertEquals("2/4", requests.get(1).chunk);
+    assertEquals("2/4", requests.get(2).chunk);
+    assertEquals("3/4", requests.get(3).chunk);
+    assertEquals("4/4", requests.get(4).chunk);
+    for (StandInServer.Request request : requests) {
+      assertEquals(requests.get(0).requestId, request.requestId);
+    }
+    // The dropped chunk doesn't count, every app is in exactly one acknowledged chunk
+    assertSentOnce(requests.get(0), requests.get(2), requests.get(3), requests.get(4));
+    assertNoProgressLeft();
+  }
+
+  @Test
+  public void queuesTheRestAfterServerError() throws Exception {
+    server
+        .respond(200, StandInServer.SUCCESS)
+        .respond(200, StandInServer.SUCCESS)
+        .respond(503, "{\"status\":\"error\",\"error\":\"Overloaded\"}");
+    assertTrue(send(apps).queued());
+    assertEquals(3, server.requests().size());
+
+    assertTrue(request.outbox().deliver());
+
+    final List<StandInServer.Request> requests = server.requests();
+    assertEquals(5, requests.size());
+    assertEquals("3/4", requests.get(3).chunk);
+    assertEquals("4/4", requests.get(4).chunk);
+    assertSentOnce(requests.get(0), requests.get(1), requests.get(3), requests.get(4));
+    assertNoProgressLeft();
+  }
+
+  @Test
+  public void resumesAfterRejectedChunk() throws Exception {
+    server.respond(200, StandInServer.SUCCESS).respond(400, REJECTED);
+    sendExpectingFailure(apps);
+    assertEquals(2, server.requests().size());
+
+    final List<AppModel> reordered = new ArrayList<>(apps);
+    Collections.reverse(reordered);
+    assertFalse(send(reordered).queued());
+
+    final List<StandInServer.Request> requests = server.requests();
+    assertEquals(5, requests.size());
+    assertEquals("2/4", requests.get(2).chunk);
+    assertEquals("3/4", requests.get(3).chunk);
+    assertEquals("4/4", requests.get(4).chunk);
+    for (StandInServer.Request request : requests) {
+      assertEquals(requests.get(0).requestId, request.requestId);
+    }
+    assertSentOnce(requests.get(0), requests.get(2), requests.get(3), requests.get(4));
+    assertNoProgressLeft();
+  }
+
+  @Test
+  public void startsOverForADifferentSelection() throws Exception {
+    server.respond(200, StandInServer.SUCCESS).respond(400, REJECTED);
+    sendExpectingFailure(apps);
+
+    send(apps.subList(0, APPS - 1));
+
+    final List<StandInServer.Request> requests = server.requests();
+    assertEquals(6, requests.size());
+    assertEquals("1/4", requests.get(2).chunk);
+    assertNotEquals(requests.get(0).requestId, requests.get(2).requestId);
+  }
+
+  @Test
+  public void startsOverForADifferentChunkSize() throws Exception {
+    server.respond(200, StandInServer.SUCCESS).respond(400, REJECTED);
+    sendExpectingFailure(apps);
+
+    request.config(config(2));
+    send(apps);
+
+    final List<StandInServer.Request> requests = server.requests();
+    assertEquals(4, requests.size());
+    assertEquals("1/2", requests.get(2).chunk);
+    assertEquals("2/2", requests.get(3).chunk);
+    assertNotEquals(requests.get(0).requestId, requests.get(2).requestId);
+    assertSentOnce(requests.get(2), requests.get(3));
+  }
+
+  private SendResult send(List<AppModel> selection) throws Exception {
+    final SendResult result =
+        new RealSendInteractor(RuntimeEnvironment.application, new Metrics())
+            .send(
+                selection,
+                request,
+                CancellationToken.NONE,
+                new SendProgressReporter(PublishSubject.<SendProgress>create(), 0));
+    assertEquals(selection.size(), result.sentCount());
+    return result;
+  }
+
+  private void sendExpectingFailure(List<AppModel> selection) throws Exception {
+    try {
+      send(selection);
+      fail();
+    } catch (Exception e) {
+      assertTrue(String.valueOf(e), e.getMessage().startsWith("Failed to send icons"));
+    }
+  }
+
+  private void assertSentOnce(StandInServer.Request... acknowledged) {
+    final HashSet<String> sent = new HashSet<>();
+    int count = 0;
+    for (StandInServer.Request request : acknowledged) {
+      final Matcher matcher = COMPONENT.matcher(request.bodyString());
+      while (matcher.find()) {
+        sent.add(matcher.group(1));
+        count++;
+      }
+    }
+    final HashSet<String> expected = new HashSet<>();
+    for (AppModel app : apps) {
+      expected.add(app.code());
+    }
+    assertEquals(expected, sent);
+    assertEquals(APPS, count);
+  }
+
+  private void assertNoProgressLeft() {
+    final String[] left = cacheFolder.list((dir, name) -> name.endsWith(".progress"));
+    assertEquals(0, left == null ? 0 : left.length);
+  }
+}
@@ -0,0 +1,139 @@
+package com.afollestad.iconrequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.app.Application;
+import io.reactivex.schedulers.Schedulers;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/** Runs under Robolectric for the platform's org.json, the server is a local stand-in. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class HttpRequestTransportTest {
+
+  private static final String APPS_JSON = "{\"components\":[]}";
+
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
+  private StandInServer server;
+  private File archive;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StandInServer();
+    archive = temp.newFile("IconRequest.zip");
+    try (FileOutputStream os = new FileOutputStream(archive)) {
+      os.write("zip bytes".getBytes("UTF-8"));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void sendUploadsArchiveAndApps() throws Exception {
+    new HttpRequestTransport(server.url(), "key").send(archive, APPS_JSON, null);
+
+    final List<StandInServer.Request> requests = server.requests("/v1/request");
+    assertEquals(1, requests.size());
+    assertEquals("key", requests.get(0).token);
+    final String body = requests.get(0).bodyString();
+    assertTrue(body, body.contains("filename=\"IconRequest.zip\""));
+    assertTrue(body, body.contains("zip bytes"));
+    assertTrue(body, body.contains(APPS_JSON));
+  }
+
+  @Test
+  public void sendFailsOnHttpError() throws Exception {
+    server.respond(500, "{\"status\":\"error\",\"error\":\"Database unavailable\"}");
+    try {
+      new HttpRequestTransport(server.url(), "key").send(archive, APPS_JSON, null);
+      fail();
+    } catch (Exception e) {
+      assertEquals(
+          "The request manager responded with HTTP 500: Database unavailable", e.getMessage());
+    }
+  }
+
+  @Test
+  public void serverErrorsAreRetryable() throws Exception {
+    server
+        .respond(503, "{\"status\":\"error\",\"error\":\"Overloaded\"}")
+        .respond(429, "{\"status\":\"error\",\"error\":\"Slow down\"}")
+        .respond(502, "{<html>Bad Gateway</html>")
+        .respond(400, "{\"status\":\"error\",\"error\":\"Bad request\"}");
+    final HttpRequestTransport transport = new HttpRequestTransport(server.url(), "key");
+    assertTrue(sendFailure(transport) instanceof RetryableException);
+    assertTrue(sendFailure(transport) instanceof RetryableException);
+    final Exception malformed = sendFailure(transport);
+    assertTrue(String.valueOf(malformed), malformed instanceof RetryableException);
+    assertFalse(sendFailure(transport) instanceof IOException);
+  }
+
+  @Test
+  public void sendFailsOnUnsuccessfulStatus() throws Exception {
+    server.respond(200, "{\"status\":\"error\",\"error\":\"Invalid API key\"}");
+    try {
+      new HttpRequestTransport(server.url(), "key").send(archive, APPS_JSON, null);
+      fail();
+    } catch (Exception e) {
+      assertEquals("Invalid API key", e.getMessage());
+    }
+  }
+
+  private Exception sendFailure(HttpRequestTransport transport) {
+    try {
+      transport.send(archive, APPS_JSON, null);
+    } catch (Exception e) {
+      return e;
+    }
+    throw new AssertionError("Expected the send to fail");
+  }
+
+  @Test
+  public void requestUsesConfiguredApiHost() throws Exception {
+    final Application app = RuntimeEnvironment.application;
+    final PolarRequest request =
+        PolarRequest.make(app, null)
+            .schedulers(
+                PolarSchedulers.create()
+                    .load(Schedulers.trampoline())
+                    .send(Schedulers.trampoline())
+                    .background(Schedulers.trampoline())
+                    .main(Schedulers.trampoline())
+                    .build())
+            .config(PolarConfig.create(app).apiHost(server.url() + "/").apiKey("key").build());
+
+    final RequestTransport transport = request.transport();
+    assertSame(transport, request.transport());
+    transport.send(archive, APPS_JSON, null);
+    assertEquals(1, server.requests("/v1/request").size());
+
+    try (StandInServer other = new StandInServer()) {
+      request.config(PolarConfig.create(app).apiHost(other.url()).apiKey("key").build());
+      final RequestTransport switched = request.transport();
+      assertNotSame(transport, switched);
+      switched.send(archive, APPS_JSON, null);
+      assertEquals(1, other.requests("/v1/request").size());
+      assertEquals(1, server.requests("/v1/request").size());
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.afollestad.iconrequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import io.reactivex.subjects.PublishSubject;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * The hash-first handshake against a stand-in server: a repeated request asks which known icons
+ * the server is missing, and only uploads those.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE, shadows = ShadowIconPackageManager.class)
+public class IconHashTest {
+
+  private static final int APPS = 3;
+  private static final Pattern ICON_HASH =
+      Pattern.compile("\"componentInfo\": \"([^\"]+)\",[^}]*\"iconHash\": \"([0-9a-f]+)\"");
+
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
+  private StandInServer server;
+  private PolarRequest request;
+  private List<AppModel> apps;
+
+  @Before
+  public void setUp() throws Exception {
+    final Application app = RuntimeEnvironment.application;
+    server = new StandInServer();
+    final File cacheFolder = temp.newFolder("cache");
+    apps = new ArrayList<>(APPS);
+    for (int i = 0; i < APPS; i++) {
+      final String pkg = "com.example.app" + i;
+      // Icons of different sizes hash differently
+      TestApps.install(app, pkg, "App " + i, TestApps.icon(app, 48 + i));
+      apps.add(AppModel.create("App " + i, TestApps.code(pkg), pkg));
+    }
+    request =
+        PolarRequest.make(app, null)
+            .schedulers(TestApps.schedulers())
+            .config(
+                PolarConfig.create(app)
+                    .cacheFolder(cacheFolder.getAbsolutePath())
+                    .apiHost(server.url())
+                    .apiKey("key")
+                    .build());
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void repeatedRequestOnlyUploadsMissingIcons() throws Exception {
+    send();
+    assertEquals(0, server.requests("/v1/icons/missing").size());
+    final StandInServer.Request first = server.requests("/v1/request").get(0);
+    final Map<String, String> hashes = iconHashes(first);
+    assertEquals(APPS, hashes.size());
+    assertUploadedIcons(first, 0, 1, 2);
+
+    final String missing = hashes.get(apps.get(1).code());
+    server.respond(200, "{\"missing\":[\"" + missing + "\"]}");
+    send();
+
+    final List<StandInServer.Request> checks = server.requests("/v1/icons/missing");
+    assertEquals(1, checks.size());
+    assertEquals("key", checks.get(0).token);
+    for (String hash : hashes.values()) {
+      assertTrue(checks.get(0).bodyString(), checks.get(0).bodyString().contains(hash));
+    }
+    final StandInServer.Request second = server.requests("/v1/request").get(1);
+    assertEquals(hashes, iconHashes(second));
+    assertUploadedIcons(second, 1);
+  }
+
+  @Test
+  public void serversWithoutTheCheckReceiveEveryIcon() throws Exception {
+    send();
+    server.respond(404, "Not Found");
+    send();
+
+    assertEquals(1, server.requests("/v1/icons/missing").size());
+    assertUploadedIcons(server.requests("/v1/request").get(1), 0, 1, 2);
+  }
+
+  private void send() throws Exception {
+    final SendResult result =
+        new RealSendInteractor(RuntimeEnvironment.application, new Metrics())
+            .send(
+                apps,
+                request,
+                CancellationToken.NONE,
+                new SendProgressReporter(PublishSubject.<SendProgress>create(), 0));
+    assertTrue(String.valueOf(result.error()), result.success());
+  }
+
+  private static Map<String, String> iconHashes(StandInServer.Request upload) {
+    final HashMap<String, String> hashes = new HashMap<>();
+    final Matcher matcher = ICON_HASH.matcher(upload.bodyString());
+    while (matcher.find()) {
+      hashes.put(matcher.group(1), matcher.group(2));
+    }
+    return hashes;
+  }
+
+  /** Entry names are stored as-is in the archive, the icons are the apps' package names. */
+  private void assertUploadedIcons(StandInServer.Request upload, int... indices) {
+    final String body = upload.bodyString();
+    final boolean[] expected = new boolean[APPS];
+    for (int index : indices) {
+      expected[index] = true;
+    }
+    for (int i = 0; i < APPS; i++) {
+      final String entry = apps.get(i).pkg() + ".png";
+      if (expected[i]) {
+        assertTrue(entry, body.contains(entry));
+      } else {
+        assertFalse(entry, body.contains(entry));
+      }
+    }
+  }
+}
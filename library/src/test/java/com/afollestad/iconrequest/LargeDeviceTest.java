@@ -0,0 +1,206 @@
+package com.afollestad.iconrequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.graphics.drawable.Drawable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * Load, select all and send through {@link PolarRequest} on a synthetic large device: a shadow
+ * package manager with hundreds to thousands of launcher apps, every other one of which is themed
+ * by a generated 15k entry appfilter asset. The time and peak heap of each phase are printed, so
+ * changes to ComponentInfoPm and RealSendInteractor can be measured without hardware. Run it with
+ * ./gradlew :library:testDebugUnitTest --tests '*LargeDeviceTest'.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+  sdk = 27,
+  manifest = "src/main/AndroidManifest.xml",
+  assetDir = "../../" + LargeDeviceTest.ASSET_DIR,
+  shadows = ShadowIconPackageManager.class
+)
+public class LargeDeviceTest {
+
+  static final String ASSET_DIR = "build/large-device/assets";
+  private static final String FILTER_NAME = "appfilter_large.xml";
+  private static final int FILTER_ENTRIES = 15000;
+  private static final int ICON_SIZE = 192;
+
+  /** Written before Robolectric reads any assets, the asset directory is only looked at on open. */
+  @BeforeClass
+  public static void writeAppFilter() throws Exception {
+    final File dir = new File(ASSET_DIR);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IllegalStateException("Unable to create " + dir.getAbsolutePath());
+    }
+    try (Writer out =
+        new OutputStreamWriter(
+            new FileOutputStream(new File(dir, FILTER_NAME)), Charset.forName("UTF-8"))) {
+      out.write("<resources>\n");
+      for (int i = 0; i < FILTER_ENTRIES; i++) {
+        out.write("\n    <!-- App " + i + " -->\n    <item\n        component=\"ComponentInfo{");
+        out.write(code(i));
+        out.write("}\"\n        drawable=\"app_" + i + "\" />\n");
+      }
+      out.write("\n</resources>\n");
+    }
+  }
+
+  @Test
+  public void sixHundredApps() throws Exception {
+    run(600);
+  }
+
+  @Test
+  public void threeThousandApps() throws Exception {
+    run(3000);
+  }
+
+  @Test
+  public void pagedLoadFollowsDemand() throws Exception {
+    final Application app = RuntimeEnvironment.application;
+    install(app, 600);
+    final PolarRequest request =
+        PolarRequest.make(app, null)
+            .schedulers(
+                PolarSchedulers.create()
+                    .load(Schedulers.single())
+                    .main(Schedulers.trampoline())
+                    .build())
+            .config(
+                PolarConfig.create(app)
+                    .appFilterName(FILTER_NAME)
+                    .errorOnInvalidDrawables(false)
+                    .build());
+
+    final TestSubscriber<LoadPage> first = request.loadPaged(50).test(1);
+    first.awaitCount(1).assertValueCount(1).assertNotComplete();
+    // Given time, a scan running ahead would have finished and swapped in the loaded apps
+    Thread.sleep(1000);
+    assertTrue(request.getLoadedApps().isEmpty());
+    assertTrue(request.loading().blockingFirst());
+    first.cancel();
+    assertFalse(request.loading().blockingFirst());
+
+    final TestSubscriber<LoadPage> all = request.loadPaged(50).test(1);
+    for (int pages = 1; all.awaitCount(pages).valueCount() == pages; pages++) {
+      all.request(1);
+    }
+    all.awaitTerminalEvent();
+    all.assertComplete();
+    final LoadPage last = all.values().get(all.valueCount() - 1);
+    assertTrue(last.last());
+    assertEquals(300, last.apps().size());
+    assertFalse(request.loading().blockingFirst());
+  }
+
+  private static void run(int installed) throws Exception {
+    final Application app = RuntimeEnvironment.application;
+    install(app, installed);
+    final int unthemed = installed / 2;
+
+    final AtomicLong uploadedBytes = new AtomicLong();
+    final PolarRequest request =
+        PolarRequest.make(app, null)
+            .schedulers(TestApps.schedulers())
+            .transport((archive, appsJson, chunk) -> uploadedBytes.addAndGet(archive.length()))
+            .config(
+                PolarConfig.create(app)
+                    .appFilterName(FILTER_NAME)
+                    .errorOnInvalidDrawables(false)
+                    .apiKey("large-device")
+                    .build());
+
+    final Phase load = new Phase();
+    final LoadResult loaded = request.load().blockingFirst();
+    load.end();
+    assertTrue(String.valueOf(loaded.error()), loaded.success());
+    assertEquals(unthemed, loaded.apps().size());
+
+    final Phase select = new Phase();
+    request.selectAll();
+    final List<AppModel> selected = request.getSelectedApps().blockingGet();
+    select.end();
+    assertEquals(unthemed, selected.size());
+
+    final Phase send = new Phase();
+    final SendResult sent = request.send().blockingFirst();
+    send.end();
+    assertTrue(String.valueOf(sent.error()), sent.success());
+    assertEquals(unthemed, sent.sentCount());
+    assertTrue(uploadedBytes.get() > 0);
+
+    System.out.printf(
+        "%d installed, %d unthemed: load %s, select all %s, send %s (%d KB uploaded)%n",
+        installed, unthemed, load, select, send, uploadedBytes.get() / 1024);
+  }
+
+  private static void install(Application app, int count) {
+    final Drawable icon = TestApps.icon(app, ICON_SIZE);
+    for (int i = 0; i < count; i++) {
+      // Even ones are in the appfilter, odd ones aren't
+      final int id = i % 2 == 0 ? i : i + 1_000_000;
+      TestApps.install(app, pkg(id), "Example App " + id, icon);
+    }
+  }
+
+  private static String pkg(int id) {
+    return "com.vendor" + (id % 97) + ".app" + id;
+  }
+
+  private static String code(int id) {
+    return TestApps.code(pkg(id));
+  }
+
+  /** Wall time and peak heap from construction to {@link #end()}. */
+  private static class Phase {
+
+    private final long start;
+    private long millis;
+    private long peakHeapBytes;
+
+    Phase() {
+      System.gc();
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          pool.resetPeakUsage();
+        }
+      }
+      start = System.nanoTime();
+    }
+
+    void end() {
+      millis = (System.nanoTime() - start) / 1_000_000L;
+      for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return millis + " ms / " + (peakHeapBytes >> 20) + " MB peak heap";
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.afollestad.iconrequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.app.Application;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/** Coalesced pending requests, one of which the server rejects. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE, shadows = ShadowIconPackageManager.class)
+public class RequestOutboxTest {
+
+  private static final String REJECTED = "{\"status\":\"error\",\"error\":\"Bad request\"}";
+
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
+  private StandInServer server;
+  private File cacheFolder;
+  private PolarRequest request;
+  private List<AppModel> apps;
+
+  @Before
+  public void setUp() throws Exception {
+    final Application context = RuntimeEnvironment.application;
+    server = new StandInServer();
+    cacheFolder = temp.newFolder("cache");
+    apps = new ArrayList<>(2);
+    for (int i = 0; i < 2; i++) {
+      final String pkg = "com.example.app" + i;
+      TestApps.install(context, pkg, "App " + i, TestApps.icon(context, 48));
+      apps.add(AppModel.create("App " + i, TestApps.code(pkg), pkg));
+    }
+    request =
+        PolarRequest.make(context, null)
+            .schedulers(
+                PolarSchedulers.create()
+                    .load(Schedulers.trampoline())
+                    .send(Schedulers.trampoline())
+                    .main(Schedulers.trampoline())
+                    .encode(Schedulers.computation())
+                    // Retries only run when the test delivers
+                    .background(new TestScheduler())
+                    .build())
+            .config(
+                PolarConfig.create(context)
+                    .cacheFolder(cacheFolder.getAbsolutePath())
+                    .apiHost(server.url())
+                    .apiKey("key")
+                    .build());
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void rejectedRequestDoesNotDropOthers() throws Exception {
+    server.disconnect().disconnect();
+    assertTrue(send(apps.get(0)).queued());
+    assertTrue(send(apps.get(1)).queued());
+    assertEquals(2, server.requests("/v1/request").size());
+
+    // Together, then one by one in the order they were queued
+    server.respond(400, REJECTED).respond(200, StandInServer.SUCCESS).respond(400, REJECTED);
+    try {
+      request.outbox().deliver();
+      fail();
+    } catch (Exception e) {
+      assertTrue(e.getMessage(), e.getMessage().endsWith("Bad request"));
+    }
+
+    final List<StandInServer.Request> requests = server.requests("/v1/request");
+    assertEquals(5, requests.size());
+    assertTrue(requests.get(2).bodyString().contains(apps.get(0).code()));
+    assertTrue(requests.get(2).bodyString().contains(apps.get(1).code()));
+    assertTrue(requests.get(3).bodyString().contains(apps.get(0).code()));
+    assertFalse(requests.get(3).bodyString().contains(apps.get(1).code()));
+    assertTrue(requests.get(4).bodyString().contains(apps.get(1).code()));
+
+    final String[] left = new File(cacheFolder, RequestOutbox.FOLDER_NAME).list();
+    assertEquals(0, left == null ? 0 : left.length);
+    final List<AppModel> loaded = new ArrayList<>(apps);
+    assertEquals(1, new RequestedApps(RuntimeEnvironment.application).apply(loaded, 0));
+    assertTrue(loaded.get(0).requested());
+    assertFalse(loaded.get(1).requested());
+  }
+
+  private SendResult send(AppModel app) throws Exception {
+    return new RealSendInteractor(RuntimeEnvironment.application, new Metrics())
+        .send(
+            Collections.singletonList(app),
+            request,
+            CancellationToken.NONE,
+            new SendProgressReporter(PublishSubject.<SendProgress>create(), 0));
+  }
+}
@@ -0,0 +1,106 @@
+package com.afollestad.iconrequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/** The requested apps ledger, fed by remote requests once the outbox delivered them. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE, shadows = ShadowIconPackageManager.class)
+public class RequestedAppsTest {
+
+  private static final String PKG = "com.example.app";
+
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
+  private StandInServer server;
+  private PolarRequest request;
+  private AppModel app;
+
+  @Before
+  public void setUp() throws Exception {
+    final Application context = RuntimeEnvironment.application;
+    server = new StandInServer();
+    TestApps.install(context, PKG, "App", TestApps.icon(context, 48));
+    app = AppModel.create("App", TestApps.code(PKG), PKG);
+    request =
+        PolarRequest.make(context, null)
+            .schedulers(
+                PolarSchedulers.create()
+                    .load(Schedulers.trampoline())
+                    .send(Schedulers.trampoline())
+                    .main(Schedulers.trampoline())
+                    .encode(Schedulers.computation())
+                    // Retries only run when the test delivers
+                    .background(new TestScheduler())
+                    .build())
+            .config(
+                PolarConfig.create(context)
+                    .cacheFolder(temp.newFolder("cache").getAbsolutePath())
+                    .apiHost(server.url())
+                    .apiKey("key")
+                    .build());
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void queuedRequestsAreRecordedOnceDelivered() throws Exception {
+    server.disconnect();
+    final SendResult result =
+        new RealSendInteractor(RuntimeEnvironment.application, new Metrics())
+            .send(
+                Collections.singletonList(app),
+                request,
+                CancellationToken.NONE,
+                new SendProgressReporter(PublishSubject.<SendProgress>create(), 0));
+    assertTrue(result.queued());
+    assertFalse(requested(new RequestedApps(RuntimeEnvironment.application), 0));
+
+    assertTrue(request.outbox().deliver());
+    assertEquals(2, server.requests("/v1/request").size());
+    assertTrue(requested(new RequestedApps(RuntimeEnvironment.application), 0));
+  }
+
+  @Test
+  public void expiredEntriesArePruned() throws Exception {
+    final RequestedApps requestedApps = new RequestedApps(RuntimeEnvironment.application);
+    requestedApps.record(Collections.singletonList(app));
+    final File file =
+        new File(FileUtil.dataFolder(RuntimeEnvironment.application), "requested.ledger");
+    final long expired = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31);
+    FileUtil.writeAll(file, app.code() + "\t" + expired + "\n");
+
+    final RequestedApps reloaded = new RequestedApps(RuntimeEnvironment.application);
+    assertTrue(requested(reloaded, 0));
+    assertFalse(requested(reloaded, 30));
+    assertEquals("", FileUtil.readAll(file));
+    assertFalse(requested(new RequestedApps(RuntimeEnvironment.application), 0));
+  }
+
+  private boolean requested(RequestedApps requestedApps, int expiryDays) {
+    final List<AppModel> apps = new ArrayList<>(Collections.singletonList(app));
+    return requestedApps.apply(apps, expiryDays) == 1 && apps.get(0).requested();
+  }
+}
@@ -0,0 +1,89 @@
+package com.afollestad.iconrequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Parcel;
+import com.afollestad.iconrequest.core.AppInventory;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/** Loaded apps surviving process death, parceled the way the framework does it. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class SavedStateTest {
+
+  @Test
+  public void restoresSavedInventory() {
+    final Application app = RuntimeEnvironment.application;
+    final ArrayList<AppModel> apps = apps();
+    final Bundle saved = new Bundle();
+    final PolarRequest request = PolarRequest.make(app, null);
+    request.saveInstance(saved);
+    assertTrue(PolarRequest.make(app, parcel(saved)).getLoadedApps().isEmpty());
+
+    // A request with loaded apps, which are saved as an inventory
+    saved.clear();
+    PolarRequest.make(app, parcel(legacy(apps))).saveInstance(saved);
+    assertTrue(saved.getSerializable("ir.loadedApps") instanceof AppInventory);
+    assertApps(apps, PolarRequest.make(app, parcel(saved)).getLoadedApps());
+  }
+
+  @Test
+  public void restoresLegacyParcelableList() {
+    final ArrayList<AppModel> apps = apps();
+    final List<AppModel> restored =
+        PolarRequest.make(RuntimeEnvironment.application, parcel(legacy(apps))).getLoadedApps();
+    assertApps(apps, restored);
+  }
+
+  private static ArrayList<AppModel> apps() {
+    final ArrayList<AppModel> apps = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      final String pkg = "com.example.app" + i;
+      apps.add(AppModel.create("App " + i, TestApps.code(pkg), pkg));
+    }
+    apps.set(1, apps.get(1).withSelected(true));
+    apps.set(2, apps.get(2).withRequested(true));
+    return apps;
+  }
+
+  /** Saved state as written before the loaded apps were saved as an inventory. */
+  private static Bundle legacy(ArrayList<AppModel> apps) {
+    final Bundle saved = new Bundle();
+    saved.putParcelableArrayList("ir.loadedApps", apps);
+    return saved;
+  }
+
+  private static Bundle parcel(Bundle bundle) {
+    final Parcel parcel = Parcel.obtain();
+    try {
+      bundle.writeToParcel(parcel, 0);
+      parcel.setDataPosition(0);
+      final Bundle restored = parcel.readBundle(SavedStateTest.class.getClassLoader());
+      restored.setClassLoader(SavedStateTest.class.getClassLoader());
+      return restored;
+    } finally {
+      parcel.recycle();
+    }
+  }
+
+  private static void assertApps(List<AppModel> expected, List<AppModel> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).code(), actual.get(i).code());
+      assertEquals(expected.get(i).name(), actual.get(i).name());
+      assertEquals(expected.get(i).selected(), actual.get(i).selected());
+      assertEquals(expected.get(i).requested(), actual.get(i).requested());
+    }
+    assertFalse(actual.get(0).selected());
+  }
+}
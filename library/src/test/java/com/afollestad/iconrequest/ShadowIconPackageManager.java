@@ -0,0 +1,27 @@
+package com.afollestad.iconrequest;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageItemInfo;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.graphics.drawable.Drawable;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowApplicationPackageManager;
+
+/**
+ * Robolectric doesn't load item icons, AppModel gets app icons through them. This one returns the
+ * icons set with setApplicationIcon instead.
+ */
+@Implements(className = "android.app.ApplicationPackageManager")
+public class ShadowIconPackageManager extends ShadowApplicationPackageManager {
+
+  @Implementation
+  @Override
+  protected Drawable loadItemIcon(PackageItemInfo itemInfo, ApplicationInfo appInfo) {
+    try {
+      return getApplicationIcon(appInfo.packageName);
+    } catch (NameNotFoundException e) {
+      return null;
+    }
+  }
+}
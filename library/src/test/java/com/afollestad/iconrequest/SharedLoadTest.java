@@ -0,0 +1,128 @@
+package com.afollestad.iconrequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import android.app.Application;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/** Loads shared between concurrent load() calls, and reused shortly after they finished. */
+@RunWith(RobolectricTestRunner.class)
+@Config(
+  sdk = 27,
+  manifest = "src/main/AndroidManifest.xml",
+  assetDir = "../../" + SharedLoadTest.ASSET_DIR,
+  shadows = ShadowIconPackageManager.class
+)
+public class SharedLoadTest {
+
+  static final String ASSET_DIR = "build/shared-load/assets";
+  private static final String FILTER_NAME = "appfilter_shared.xml";
+  private static final int RACES = 30000;
+
+  /** Written before Robolectric reads any assets, the asset directory is only looked at on open. */
+  @BeforeClass
+  public static void writeAppFilter() throws Exception {
+    final File dir = new File(ASSET_DIR);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IllegalStateException("Unable to create " + dir.getAbsolutePath());
+    }
+    try (Writer out =
+        new OutputStreamWriter(
+            new FileOutputStream(new File(dir, FILTER_NAME)), Charset.forName("UTF-8"))) {
+      out.write(
+          "<resources>\n    <item\n        component=\"ComponentInfo{"
+              + TestApps.code("com.example.themed")
+              + "}\"\n        drawable=\"themed\" />\n</resources>\n");
+    }
+  }
+
+  @Test
+  public void finishedLoadsAreReusedWithinTheWindow() {
+    final Application app = RuntimeEnvironment.application;
+    TestApps.install(app, "com.example.app0", "App 0", TestApps.icon(app, 48));
+    final PolarRequest reusing = request(1000);
+    final PolarRequest rescanning = request(0);
+    assertEquals(1, reusing.load().blockingFirst().apps().size());
+    assertEquals(1, rescanning.load().blockingFirst().apps().size());
+
+    TestApps.install(app, "com.example.app1", "App 1", TestApps.icon(app, 48));
+    assertEquals(1, reusing.load().blockingFirst().apps().size());
+    assertEquals(2, rescanning.load().blockingFirst().apps().size());
+  }
+
+  /**
+   * The last subscriber of a load leaving while another one joins. The joiner must either keep the
+   * load alive or start a new one, it must never end up with the cancelled load.
+   */
+  @Test
+  public void joiningWhileTheLastSubscriberLeaves() throws Exception {
+    final TestScheduler load = new TestScheduler();
+    final PolarRequest request =
+        PolarRequest.make(RuntimeEnvironment.application, null)
+            .schedulers(
+                PolarSchedulers.create().load(load).main(Schedulers.trampoline()).build())
+            .config(config(0));
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      for (int i = 0; i < RACES; i++) {
+        final TestObserver<LoadResult> leaving = request.load().test();
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        final Future<?> leave =
+            executor.submit(
+                () -> {
+                  barrier.await();
+                  leaving.dispose();
+                  return null;
+                });
+        final Future<TestObserver<LoadResult>> join =
+            executor.submit(
+                () -> {
+                  barrier.await();
+                  return request.load().test();
+                });
+        leave.get();
+        final TestObserver<LoadResult> joining = join.get();
+
+        load.triggerActions();
+        joining.assertValueCount(1);
+        final Exception error = joining.values().get(0).error();
+        assertFalse("Race " + i + ": " + error, error instanceof CancellationException);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static PolarRequest request(int loadReuseMillis) {
+    return PolarRequest.make(RuntimeEnvironment.application, null)
+        .schedulers(TestApps.schedulers())
+        .config(config(loadReuseMillis));
+  }
+
+  private static PolarConfig config(int loadReuseMillis) {
+    return PolarConfig.create(RuntimeEnvironment.application)
+        .appFilterName(FILTER_NAME)
+        .errorOnInvalidDrawables(false)
+        .loadReuseMillis(loadReuseMillis)
+        .build();
+  }
+}
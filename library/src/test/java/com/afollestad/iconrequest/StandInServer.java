@@ -0,0 +1,139 @@
+package com.afollestad.iconrequest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A local stand-in for the request manager. Requests are recorded and answered with the queued
+ * responses in order, or with a success once there are none left. A queued disconnect drops the
+ * connection without answering, which clients see as an IOException.
+ */
+final class StandInServer implements Closeable {
+
+  static final String SUCCESS = "{\"status\":\"success\"}";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Response DISCONNECT = new Response(0, null);
+
+  private final HttpServer server;
+  private final ArrayDeque<Response> responses = new ArrayDeque<>();
+  private final List<Request> requests = new ArrayList<>();
+
+  StandInServer() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  /** The host to configure clients with, without a trailing slash. */
+  String url() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  synchronized StandInServer respond(int code, String body) {
+    responses.add(new Response(code, body));
+    return this;
+  }
+
+  synchronized StandInServer disconnect() {
+    responses.add(DISCONNECT);
+    return this;
+  }
+
+  synchronized List<Request> requests() {
+    return new ArrayList<>(requests);
+  }
+
+  synchronized List<Request> requests(String path) {
+    final List<Request> matching = new ArrayList<>();
+    for (Request request : requests) {
+      if (request.path.equals(path)) {
+        matching.add(request);
+      }
+    }
+    return matching;
+  }
+
+  private void handle(HttpExchange exchange) {
+    try {
+      final Response response;
+      synchronized (this) {
+        requests.add(
+            new Request(
+                exchange.getRequestURI().getPath(),
+                exchange.getRequestHeaders().getFirst("TokenID"),
+                exchange.getRequestHeaders().getFirst("X-Request-Id"),
+                exchange.getRequestHeaders().getFirst("X-Request-Chunk"),
+                readAll(exchange.getRequestBody())));
+        response = responses.isEmpty() ? new Response(200, SUCCESS) : responses.poll();
+      }
+      if (response == DISCONNECT) {
+        return;
+      }
+      final byte[] body = response.body.getBytes(UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(response.code, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static byte[] readAll(InputStream is) throws Exception {
+    final ByteArrayOutputStream os = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[8192];
+    int read;
+    while ((read = is.read(buffer)) != -1) os.write(buffer, 0, read);
+    return os.toByteArray();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  static final class Request {
+
+    final String path;
+    final String token;
+    final String requestId;
+    final String chunk;
+    final byte[] body;
+
+    Request(String path, String token, String requestId, String chunk, byte[] body) {
+      this.path = path;
+      this.token = token;
+      this.requestId = requestId;
+      this.chunk = chunk;
+      this.body = body;
+    }
+
+    String bodyString() {
+      return new String(body, UTF_8);
+    }
+  }
+
+  private static final class Response {
+
+    final int code;
+    final String body;
+
+    Response(int code, String body) {
+      this.code = code;
+      this.body = body;
+    }
+  }
+}
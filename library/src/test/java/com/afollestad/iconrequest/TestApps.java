@@ -0,0 +1,62 @@
+package com.afollestad.iconrequest;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.ResolveInfo;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import io.reactivex.schedulers.Schedulers;
+import org.robolectric.shadows.ShadowPackageManager;
+
+/** Launcher apps for Robolectric's package manager, see {@link ShadowIconPackageManager}. */
+final class TestApps {
+
+  private TestApps() {}
+
+  static BitmapDrawable icon(Application app, int size) {
+    return new BitmapDrawable(
+        app.getResources(), Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888));
+  }
+
+  /** Installs an app whose launcher activity is pkg + ".ui.MainActivity". */
+  static void install(Application app, String pkg, String label, Drawable icon) {
+    final ShadowPackageManager pm = shadowOf(app.getPackageManager());
+    final PackageInfo info = new PackageInfo();
+    info.packageName = pkg;
+    info.versionCode = 1;
+    info.applicationInfo = new ApplicationInfo();
+    info.applicationInfo.packageName = pkg;
+    info.applicationInfo.nonLocalizedLabel = label;
+    pm.addPackage(info);
+    pm.setApplicationIcon(pkg, icon);
+
+    final ResolveInfo launcher = new ResolveInfo();
+    launcher.activityInfo = new ActivityInfo();
+    launcher.activityInfo.packageName = pkg;
+    launcher.activityInfo.name = pkg + ".ui.MainActivity";
+    pm.addResolveInfoForIntent(
+        new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER).setPackage(pkg),
+        launcher);
+  }
+
+  static String code(String pkg) {
+    return pkg + "/" + pkg + ".ui.MainActivity";
+  }
+
+  /** Runs everything on the calling thread, except icon encoding which needs threads of its own. */
+  static PolarSchedulers schedulers() {
+    return PolarSchedulers.create()
+        .load(Schedulers.trampoline())
+        .send(Schedulers.trampoline())
+        .background(Schedulers.trampoline())
+        .main(Schedulers.trampoline())
+        .encode(Schedulers.computation())
+        .build();
+  }
+}
@@ -0,0 +1,47 @@
+package com.afollestad.iconrequest.plugin;
+
+/**
+ * The {@code appFilter} block of an icon pack's build script.
+ *
+ * <pre>
+ * appFilter {
+ *     filterName 'appfilter.xml'
+ *     errorOnInvalidDrawables false
+ * }
+ * </pre>
+ */
+public class AppFilterExtension {
+
+  private String filterName = "appfilter.xml";
+  private boolean errorOnInvalidDrawables;
+
+  /** The appfilter's asset name, the same as PolarConfig.appFilterName(). */
+  public String getFilterName() {
+    return filterName;
+  }
+
+  public void setFilterName(String filterName) {
+    this.filterName = filterName;
+  }
+
+  public void filterName(String filterName) {
+    this.filterName = filterName;
+  }
+
+  /**
+   * Fails the build when an item's drawable isn't among the project's own resources, otherwise it's
+   * logged as a warning. Resources of dependencies aren't checked, so only turn this on when the
+   * pack defines all of its drawables itself.
+   */
+  public boolean isErrorOnInvalidDrawables() {
+    return errorOnInvalidDrawables;
+  }
+
+  public void setErrorOnInvalidDrawables(boolean errorOnInvalidDrawables) {
+    this.errorOnInvalidDrawables = errorOnInvalidDrawables;
+  }
+
+  public void errorOnInvalidDrawables(boolean errorOnInvalidDrawables) {
+    this.errorOnInvalidDrawables = errorOnInvalidDrawables;
+  }
+}
@@ -0,0 +1,113 @@
+package com.afollestad.iconrequest.plugin;
+
+import com.android.build.gradle.AppExtension;
+import com.android.build.gradle.BaseExtension;
+import com.android.build.gradle.LibraryExtension;
+import com.android.build.gradle.api.BaseVariant;
+import com.android.builder.model.SourceProvider;
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+
+/**
+ * Compiles an icon pack's appfilter at build time. Apply it after the Android plugin:
+ *
+ * <pre>
+ * apply plugin: 'com.android.application'
+ * apply plugin: 'com.afollestad.iconrequest.appfilter'
+ * </pre>
+ *
+ * Each variant gets a compile[Variant]AppFilter task. It parses the variant's appfilter, taken from
+ * the highest priority source set which has one, and checks its drawables against the resources
+ * of all of the variant's source sets before the variant's assets are merged. The compiled filter
+ * is added to that variant's assets next to the XML. The library loads it instead of the XML, see
+ * {@link CompileAppFilterTask}.
+ */
+public class AppFilterPlugin implements Plugin<Project> {
+
+  private static final String TASK_NAME = "compileAppFilter";
+
+  @Override
+  public void apply(Project project) {
+    final AppFilterExtension extension =
+        project.getExtensions().create("appFilter", AppFilterExtension.class);
+    project
+        .getPlugins()
+        .withId(
+            "com.android.application",
+            p -> {
+              final AppExtension android = project.getExtensions().getByType(AppExtension.class);
+              final Task all = createLifecycleTask(project);
+              android
+                  .getApplicationVariants()
+                  .all(variant -> configure(project, extension, android, variant, all));
+            });
+    project
+        .getPlugins()
+        .withId(
+            "com.android.library",
+            p -> {
+              final LibraryExtension android =
+                  project.getExtensions().getByType(LibraryExtension.class);
+              final Task all = createLifecycleTask(project);
+              android
+                  .getLibraryVariants()
+                  .all(variant -> configure(project, extension, android, variant, all));
+            });
+  }
+
+  private static Task createLifecycleTask(Project project) {
+    final Task task = project.getTasks().create(TASK_NAME);
+    task.setGroup("build");
+    task.setDescription("Validates the appfilter of every variant and compiles it into an asset.");
+    return task;
+  }
+
+  // Variants are created once the build script was evaluated, so the extension is set by now
+  private static void configure(
+      Project project,
+      AppFilterExtension extension,
+      BaseExtension android,
+      BaseVariant variant,
+      Task all) {
+    final String name = variant.getName();
+    final File outputDir =
+        new File(project.getBuildDir(), "generated/assets/appfilter/" + variant.getDirName());
+    // The variant's own source set, so variants don't share, or overwrite, each other's filter
+    android.getSourceSets().maybeCreate(name).getAssets().srcDir(outputDir);
+
+    final CompileAppFilterTask task =
+        project
+            .getTasks()
+            .create(
+                "compile" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + "AppFilter",
+                CompileAppFilterTask.class);
+    task.setGroup("build");
+    task.setDescription("Validates the " + name + " appfilter and compiles it into an asset.");
+    task.setOutputDir(outputDir);
+    task.setFilterName(extension.getFilterName());
+    task.setErrorOnInvalidDrawables(extension.isErrorOnInvalidDrawables());
+
+    // Source sets come lowest priority first, the last appfilter found overrides earlier ones
+    final Set<File> resDirs = new LinkedHashSet<>();
+    for (SourceProvider sourceSet : variant.getSourceSets()) {
+      resDirs.addAll(sourceSet.getResDirectories());
+      for (File assetDir : sourceSet.getAssetsDirectories()) {
+        if (assetDir.equals(outputDir)) {
+          continue;
+        }
+        final File appFilter = new File(assetDir, extension.getFilterName());
+        if (appFilter.isFile()) {
+          task.setAppFilter(appFilter);
+        }
+      }
+    }
+    task.setResDirs(resDirs);
+
+    variant.getMergeAssets().dependsOn(task);
+    all.dependsOn(task);
+  }
+}
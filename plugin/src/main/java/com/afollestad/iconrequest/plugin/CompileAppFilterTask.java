@@ -0,0 +1,198 @@
+package com.afollestad.iconrequest.plugin;
+
+import com.afollestad.iconrequest.core.AppFilterParser;
+import com.afollestad.iconrequest.core.ComponentFilter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Parses the appfilter, checks every item's drawable against the project's resources and writes
+ * the components as a {@link ComponentFilter} asset, which the library loads instead of parsing
+ * and validating the XML on the device.
+ *
+ * <p>Only the resource folders of the project's own source sets are checked, before resources are
+ * merged. Drawables which come from a library module or AAR are reported as missing, which is why
+ * invalid drawables are a warning unless {@link #isErrorOnInvalidDrawables()} is set.
+ */
+public class CompileAppFilterTask extends DefaultTask {
+
+  // Drawables declared in values resources, e.g. <drawable name="x"> or <item type="drawable">
+  private static final Pattern VALUES_DRAWABLE =
+      Pattern.compile("<(drawable|item)\\b([^>]*)>", Pattern.DOTALL);
+  private static final Pattern NAME = Pattern.compile("\\bname\\s*=\\s*\"([^\"]+)\"");
+  private static final Pattern TYPE_DRAWABLE = Pattern.compile("\\btype\\s*=\\s*\"drawable\"");
+
+  private File appFilter;
+  private String filterName;
+  private Set<File> resDirs = Collections.emptySet();
+  private boolean errorOnInvalidDrawables;
+  private File outputDir;
+
+  @Optional
+  @InputFile
+  public File getAppFilter() {
+    return appFilter;
+  }
+
+  public void setAppFilter(File appFilter) {
+    this.appFilter = appFilter;
+  }
+
+  @Input
+  public String getFilterName() {
+    return filterName;
+  }
+
+  public void setFilterName(String filterName) {
+    this.filterName = filterName;
+  }
+
+  @InputFiles
+  public Set<File> getResDirs() {
+    return resDirs;
+  }
+
+  public void setResDirs(Set<File> resDirs) {
+    this.resDirs = resDirs;
+  }
+
+  @Input
+  public boolean isErrorOnInvalidDrawables() {
+    return errorOnInvalidDrawables;
+  }
+
+  public void setErrorOnInvalidDrawables(boolean errorOnInvalidDrawables) {
+    this.errorOnInvalidDrawables = errorOnInvalidDrawables;
+  }
+
+  @OutputDirectory
+  public File getOutputDir() {
+    return outputDir;
+  }
+
+  public void setOutputDir(File outputDir) {
+    this.outputDir = outputDir;
+  }
+
+  @TaskAction
+  public void compile() throws Exception {
+    final File output = new File(outputDir, filterName + ComponentFilter.COMPILED_EXTENSION);
+    if (appFilter == null) {
+      // Nothing to compile, and a stale compiled filter would hide the missing appfilter
+      Files.deleteIfExists(output.toPath());
+      getLogger().info("No {} found in the variant's assets, nothing to compile.", filterName);
+      return;
+    }
+
+    final Set<String> drawables = findDrawables();
+    final HashSet<String> components = new HashSet<>();
+    final List<String> invalid = new ArrayList<>();
+    try (InputStream is = new FileInputStream(appFilter)) {
+      AppFilterParser.parse(
+          is,
+          (component, drawable) -> {
+            if (drawable == null || drawable.trim().isEmpty()) {
+              invalid.add(String.format("Drawable for %s was null or empty.", component));
+            } else if (!drawables.contains(drawable)) {
+              invalid.add(
+                  String.format(
+                      "Drawable %s (for %s) doesn't match up with a resource.",
+                      drawable, component));
+            }
+            components.add(component);
+          });
+    } catch (IOException e) {
+      throw new GradleException("Failed to read " + appFilter + ": " + e.getMessage(), e);
+    }
+
+    if (!invalid.isEmpty()) {
+      final String message =
+          appFilter.getName() + " has invalid drawables:\n" + String.join("\n", invalid);
+      if (errorOnInvalidDrawables) {
+        throw new GradleException(message);
+      }
+      getLogger()
+          .warn(
+              "{}\nOnly this project's resources are checked, drawables of dependencies are "
+                  + "reported here too.",
+              message);
+    }
+
+    final ComponentFilter filter = ComponentFilter.of(components);
+    try (OutputStream os = new BufferedOutputStream(new FileOutputStream(output))) {
+      filter.writeTo(os);
+    }
+    getLogger()
+        .info("Compiled {} app(s) from {} into {}.", filter.size(), appFilter, output.getName());
+  }
+
+  /** Names of the drawables this project defines, in drawable folders or values resources. */
+  private Set<String> findDrawables() throws IOException {
+    final Set<String> names = new HashSet<>();
+    for (File resDir : resDirs) {
+      final File[] typeDirs = resDir.listFiles(File::isDirectory);
+      if (typeDirs == null) {
+        continue;
+      }
+      for (File typeDir : typeDirs) {
+        final String type = typeDir.getName();
+        final File[] files = typeDir.listFiles(File::isFile);
+        if (files == null) {
+          continue;
+        }
+        if (type.equals("drawable") || type.startsWith("drawable-")) {
+          for (File file : files) {
+            // Resource names can't contain dots, so this strips .9.png as well as .png
+            final String name = file.getName();
+            final int dot = name.indexOf('.');
+            names.add(dot == -1 ? name : name.substring(0, dot));
+          }
+        } else if (type.equals("values") || type.startsWith("values-")) {
+          for (File file : files) {
+            if (file.getName().endsWith(".xml")) {
+              addValuesDrawables(file, names);
+            }
+          }
+        }
+      }
+    }
+    return names;
+  }
+
+  private static void addValuesDrawables(File file, Set<String> names) throws IOException {
+    final String xml = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+    final Matcher element = VALUES_DRAWABLE.matcher(xml);
+    while (element.find()) {
+      final String attributes = element.group(2);
+      if (element.group(1).equals("item") && !TYPE_DRAWABLE.matcher(attributes).find()) {
+        continue;
+      }
+      final Matcher name = NAME.matcher(attributes);
+      if (name.find()) {
+        names.add(name.group(1));
+      }
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.afollestad.iconrequest.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.afollestad.iconrequest.core.ComponentFilter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Appfilters checked against drawable folders and values resources, then compiled. */
+public class CompileAppFilterTaskTest {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
+  private File res;
+  private File output;
+  private CompileAppFilterTask task;
+
+  @Before
+  public void setUp() throws Exception {
+    final Project project = ProjectBuilder.builder().withProjectDir(temp.newFolder("pack")).build();
+    res = temp.newFolder("res");
+    write("drawable/alpha.png", "");
+    write("drawable-nodpi/beta.9.png", "");
+    write(
+        "values/icons.xml",
+        "<resources>\n"
+            + "    <drawable name=\"gamma\">#ff0000</drawable>\n"
+            + "    <item name=\"delta\"\n        type=\"drawable\">@drawable/alpha</item>\n"
+            + "    <item name=\"epsilon\" type=\"string\">Not a drawable</item>\n"
+            + "</resources>");
+    output = temp.newFolder("generated");
+
+    task = project.getTasks().create("compileAppFilter", CompileAppFilterTask.class);
+    task.setFilterName("appfilter.xml");
+    task.setResDirs(Collections.singleton(res));
+    task.setOutputDir(output);
+  }
+
+  @Test
+  public void compilesValidDrawables() throws Exception {
+    task.setAppFilter(appFilter("alpha", "beta", "gamma", "delta"));
+    task.setErrorOnInvalidDrawables(true);
+    task.compile();
+    assertEquals(components(4), compiled());
+  }
+
+  @Test
+  public void warnsAboutInvalidDrawablesByDefault() throws Exception {
+    task.setAppFilter(appFilter("alpha", "epsilon", "missing", ""));
+    assertFalse(task.isErrorOnInvalidDrawables());
+    task.compile();
+    // They may come from a dependency, so they're compiled all the same
+    assertEquals(components(4), compiled());
+  }
+
+  @Test
+  public void failsOnInvalidDrawablesWhenAsked() throws Exception {
+    task.setAppFilter(appFilter("alpha", "missing", ""));
+    task.setErrorOnInvalidDrawables(true);
+    try {
+      task.compile();
+      fail();
+    } catch (GradleException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("appfilter.xml has invalid drawables"));
+      assertTrue(e.getMessage(), e.getMessage().contains("Drawable missing (for com.app1/.Main)"));
+      assertTrue(e.getMessage(), e.getMessage().contains("for com.app2/.Main was null or empty"));
+      assertFalse(e.getMessage(), e.getMessage().contains("com.app0"));
+    }
+    assertFalse(compiledFile().exists());
+  }
+
+  @Test
+  public void removesStaleOutputWithoutAppFilter() throws Exception {
+    assertTrue(compiledFile().createNewFile());
+    task.compile();
+    assertFalse(compiledFile().exists());
+  }
+
+  private File appFilter(String... drawables) throws Exception {
+    final StringBuilder xml = new StringBuilder("<resources>\n");
+    for (int i = 0; i < drawables.length; i++) {
+      xml.append("    <item component=\"ComponentInfo{com.app")
+          .append(i)
+          .append("/.Main}\" drawable=\"")
+          .append(drawables[i])
+          .append("\" />\n");
+    }
+    final File file = new File(temp.getRoot(), "appfilter.xml");
+    Files.write(file.toPath(), xml.append("</resources>").toString().getBytes(UTF_8));
+    return file;
+  }
+
+  private void write(String path, String content) throws Exception {
+    final File file = new File(res, path);
+    assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+    Files.write(file.toPath(), content.getBytes(UTF_8));
+  }
+
+  private File compiledFile() {
+    return new File(output, "appfilter.xml" + ComponentFilter.COMPILED_EXTENSION);
+  }
+
+  private HashSet<String> compiled() throws Exception {
+    try (InputStream is = new FileInputStream(compiledFile())) {
+      return new HashSet<>(ComponentFilter.readFrom(is));
+    }
+  }
+
+  private static HashSet<String> components(int count) {
+    final String[] components = new String[count];
+    for (int i = 0; i < count; i++) {
+      components[i] = "com.app" + i + "/.Main";
+    }
+    return new HashSet<>(Arrays.asList(components));
+  }
+}
@@ -138,7 +138,7 @@ public class MainActivity extends AssentActivity implements Toolbar.OnMenuItemCl
                     dialog =
                         new MaterialDialog.Builder(MainActivity.this)
                             .content(R.string.preparing_your_request)
-                            .progress(true, -1)
+                            .progress(false, 1)
                             .cancelable(false)
                             .canceledOnTouchOutside(false)
                             .show();
@@ -146,6 +146,16 @@ public class MainActivity extends AssentActivity implements Toolbar.OnMenuItemCl
                     dialog.dismiss();
                   }
                 }));
+    subs.add(
+        request
+            .sendProgress()
+            .subscribe(
+                progress -> {
+                  if (dialog != null && dialog.isShowing()) {
+                    dialog.setMaxProgress(Math.max(1, progress.total()));
+                    dialog.setProgress(progress.done());
+                  }
+                }));
     subs.add(
         request
             .sent()